@@ -0,0 +1,113 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.Item;
+import jpabook.jpashop.repository.CategoryTree;
+import jpabook.jpashop.service.CategoryService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+@RestController
+@RequiredArgsConstructor
+public class CategoryApiController {
+    
+    private final CategoryService categoryService;
+    private final CategoryTree categoryTree;
+    
+    /*
+     * 내비게이션용 전체 트리 (DB 조회 없이 스냅샷을 반환)
+     */
+    @GetMapping("/api/categories/tree")
+    public List<CategoryTree.Node> categoryTree() {
+        return categoryTree.getRoots();
+    }
+    
+    /*
+     * 하위 카테고리 전체와 그 상품 (쿼리 한번)
+     */
+    @GetMapping("/api/categories/{id}/descendants")
+    public List<CategoryDto> descendants(@PathVariable("id") Long id) {
+        return categoryService.findDescendantsWithItems(id).stream()
+                .map(CategoryDto::new)
+                .collect(toList());
+    }
+    
+    @PostMapping("/api/categories")
+    public CreateCategoryResponse saveCategory(@RequestBody @Valid CreateCategoryRequest request) {
+        Long id = categoryService.saveCategory(request.getName(), request.getParentId());
+        return new CreateCategoryResponse(id);
+    }
+    
+    @PutMapping("/api/categories/{id}/parent")
+    public void moveCategory(@PathVariable("id") Long id, @RequestBody @Valid MoveCategoryRequest request) {
+        categoryService.moveCategory(id, request.getParentId());
+    }
+    
+    @PostMapping("/api/categories/{id}/items/{itemId}")
+    public void addItem(@PathVariable("id") Long id, @PathVariable("itemId") Long itemId) {
+        categoryService.addItem(id, itemId);
+    }
+    
+    @Data
+    static class CreateCategoryRequest {
+        @NotEmpty
+        private String name;
+        private Long parentId;
+    }
+    
+    @Data
+    static class MoveCategoryRequest {
+        @NotNull
+        private Long parentId;
+    }
+    
+    @Data
+    @AllArgsConstructor
+    static class CreateCategoryResponse {
+        private Long id;
+    }
+    
+    @Getter
+    static class CategoryDto {
+        
+        private Long categoryId;
+        private String name;
+        private String path;
+        private int depth;
+        private List<CategoryItemDto> items;
+        
+        public CategoryDto(Category category) {
+            categoryId = category.getId();
+            name = category.getName();
+            path = category.getPath();
+            depth = category.getDepth();
+            items = category.getItems().stream()
+                    .map(CategoryItemDto::new)
+                    .collect(toList());
+        }
+    }
+    
+    @Getter
+    static class CategoryItemDto {
+        
+        private Long itemId;
+        private String name;
+        private int price;
+        
+        public CategoryItemDto(Item item) {
+            itemId = item.getId();
+            name = item.getName();
+            price = item.getPrice();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package jpabook.jpashop.api;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 조회 API 의 If-None-Match (ETag) 확인
+ * <p>
+ * 같은 URL 이 Accept 헤더에 따라 JSON / Smile / CBOR 로 응답하므로 (BinaryFormatConfig)
+ * ETag 에 응답 형식을 넣고 'Vary: Accept' 를 붙인다.
+ * └─> 그렇지 않으면 공유 캐시가 한 형식으로 확인받은 ETag 로 다른 형식의 요청에 응답할 수 있다.
+ */
+final class ConditionalRequests {
+    
+    private static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+    private static final MediaType CBOR = MediaType.valueOf("application/cbor");
+    
+    private ConditionalRequests() {
+    }
+    
+    /**
+     * @param etag 응답 형식 (json, smile, cbor) 을 받아서 ETag 를 만든다.
+     * @return true 면 304 로 응답하면 된다.
+     */
+    static boolean notModified(WebRequest webRequest, Function<String, String> etag) {
+        if (webRequest instanceof ServletWebRequest) {
+            HttpServletResponse response = ((ServletWebRequest) webRequest).getResponse();
+            if (response != null) {
+                response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            }
+        }
+        return webRequest.checkNotModified(etag.apply(format(webRequest.getHeader(HttpHeaders.ACCEPT))));
+    }
+    
+    /*
+     * 메시지 컨버터 순서 (JSON, Smile, CBOR) 대로 Accept 에 맞는 첫 번째 형식을 고른다.
+     * └─> 스프링 MVC 의 content negotiation 과 같은 결과가 나오도록 우선순위 (q) 가 높은 것부터 확인한다.
+     */
+    static String format(String accept) {
+        if (!StringUtils.hasText(accept)) {
+            return "json";
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return "json";
+        }
+        MediaType.sortBySpecificityAndQuality(mediaTypes);
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.includes(MediaType.APPLICATION_JSON)) {
+                return "json";
+            }
+            if (mediaType.includes(SMILE)) {
+                return "smile";
+            }
+            if (mediaType.includes(CBOR)) {
+                return "cbor";
+            }
+        }
+        return "json";
+    }
+}
@@ -0,0 +1,80 @@
+package jpabook.jpashop.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+public class ItemApiController {
+    
+    /*
+     * ehcache.xml 에 설정한 상품, 카테고리 region
+     */
+    private static final List<String> DOMAIN_REGIONS = Arrays.asList(
+            "jpabook.jpashop.domain.Item",
+            "jpabook.jpashop.domain.Category",
+            "jpabook.jpashop.domain.Category.items",
+            "jpabook.jpashop.domain.Category.child"
+    );
+    private static final String CATALOG_QUERY_REGION = "query.item-catalog";
+    
+    private final EntityManagerFactory emf;
+    
+    /*
+     * 2차 캐시 region 별 hit / miss
+     * └─> 'hibernate.generate_statistics' 가 꺼져 있으면 enabled=false 와 빈 목록을 반환한다.
+     */
+    @GetMapping("/api/items/cache/stats")
+    public CacheStatsResult itemCacheStats() {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        List<RegionStats> regions = new ArrayList<>();
+        if (!statistics.isStatisticsEnabled()) {
+            return new CacheStatsResult(false, regions);
+        }
+        
+        for (String region : DOMAIN_REGIONS) {
+            add(regions, region, statistics.getDomainDataRegionStatistics(region));
+        }
+        add(regions, CATALOG_QUERY_REGION, statistics.getQueryRegionStatistics(CATALOG_QUERY_REGION));
+        return new CacheStatsResult(true, regions);
+    }
+    
+    private void add(List<RegionStats> regions, String region, CacheRegionStatistics stats) {
+        if (stats == null) {
+            return;
+        }
+        long hit = stats.getHitCount();
+        long miss = stats.getMissCount();
+        regions.add(new RegionStats(region, hit, miss, stats.getPutCount(),
+                hit + miss == 0 ? 0 : (double) hit / (hit + miss), stats.getElementCountInMemory()));
+    }
+    
+    @Data
+    @AllArgsConstructor
+    static class CacheStatsResult {
+        private boolean enabled;
+        private List<RegionStats> regions;
+    }
+    
+    @Data
+    @AllArgsConstructor
+    static class RegionStats {
+        private String region;
+        private long hitCount;
+        private long missCount;
+        private long putCount;
+        private double hitRate;
+        private long size;          //메모리에 올라간 개수 (provider 가 알려주지 않으면 음수)
+    }
+}
@@ -1,14 +1,30 @@
 package jpabook.jpashop.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.service.AggregateVersions;
+import jpabook.jpashop.service.MemberImportService;
+import jpabook.jpashop.service.MemberImportService.Format;
+import jpabook.jpashop.service.MemberImportService.ImportProgress;
 import jpabook.jpashop.service.MemberService;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.NotEmpty;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -17,14 +33,23 @@ import java.util.stream.Collectors;
 public class MemberApiController {
     
     private final MemberService memberService;
+    private final MemberImportService memberImportService;
+    private final AggregateVersions aggregateVersions;
+    private final ObjectMapper objectMapper;
     
     @GetMapping("/api/v1/members")
     public List<Member> membersV1() {
         return memberService.findMembers();
     }
     
+    /*
+     * If-None-Match 가 지금 ETag 와 같으면 조회하지 않고 304 를 반환한다.
+     */
     @GetMapping("/api/v2/members")
-    public Result memberV2() {
+    public Result memberV2(WebRequest webRequest) {
+        if (ConditionalRequests.notModified(webRequest, aggregateVersions::memberETag)) {
+            return null;    //304 Not Modified
+        }
         List<MemberDto> collect = memberService.findMembers().stream()
                 .map(m -> new MemberDto(m.getName()))
                 .collect(Collectors.toList());
@@ -93,4 +118,32 @@ public class MemberApiController {
         private Long id;
     }
     
+    
+    /*
+     * 회원 일괄 등록
+     * └─> 요청 본문 (CSV: name,city,street,zipcode 또는 NDJSON) 을 읽는 대로 chunk 단위로 저장하고
+     *     chunk 가 끝날 때마다 진행 상황을 NDJSON 한 줄로 바로 내려준다. 마지막 줄은 done=true
+     */
+    @PostMapping(value = "/api/v2/members/import", consumes = {"text/csv", OrderApiController.NDJSON_VALUE})
+    public void importMembers(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Format format = request.getContentType().startsWith(OrderApiController.NDJSON_VALUE) ? Format.NDJSON : Format.CSV;
+        
+        response.setContentType(OrderApiController.NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        
+        ObjectWriter writer = objectMapper.writerFor(ImportProgress.class);
+        OutputStream out = response.getOutputStream();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+        
+        memberImportService.importMembers(reader, format, progress -> {
+            try {
+                out.write(writer.writeValueAsBytes(progress));
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
 }
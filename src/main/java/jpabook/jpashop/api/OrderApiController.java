@@ -1,22 +1,52 @@
 package jpabook.jpashop.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import jpabook.jpashop.domain.Address;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderItem;
 import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.OrderSummary;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.OrderSummaryRepository;
 import jpabook.jpashop.repository.order.query.OrderFlatDto;
-import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryCache;
 import jpabook.jpashop.repository.order.query.OrderQueryDto;
 import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import jpabook.jpashop.service.AggregateVersions;
+import jpabook.jpashop.service.BulkCancelResult;
+import jpabook.jpashop.service.OrderCommand;
+import jpabook.jpashop.service.OrderLine;
+import jpabook.jpashop.service.OrderRetryTemplate;
+import jpabook.jpashop.service.OrderService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -26,8 +56,18 @@ import static java.util.stream.Collectors.*;
 @RequiredArgsConstructor
 public class OrderApiController {
     
+    static final String NDJSON_VALUE = "application/x-ndjson";
+    static final int MAX_LIMIT = 1000;
+    static final int MAX_EXPORT_FETCH_SIZE = 10000;
+    
     private final OrderRepository orderRepository;
+    private final OrderSummaryRepository orderSummaryRepository;
     private final OrderQueryRepository orderQueryRepository;
+    private final OrderQueryCache orderQueryCache;
+    private final OrderService orderService;
+    private final OrderRetryTemplate orderRetryTemplate;
+    private final AggregateVersions aggregateVersions;
+    private final ObjectMapper objectMapper;
     
     @GetMapping("/api/v1/orders")
     public List<Order> orderV1() {
@@ -81,16 +121,75 @@ public class OrderApiController {
         return result;
     }
     
+    /*
+     * v3.1 의 offset 페이징을 keyset(cursor) 페이징으로 바꾼 버전
+     *    1. 응답의 nextCursor 를 다음 요청의 cursor 로 넘기면 이어서 조회한다.
+     *       └─> cursor 는 마지막 order_id 를 인코딩한 값이므로 클라이언트는 내용을 신경쓰지 않아도 된다.
+     *    2. limit + 1 건을 조회해서 다음 페이지가 있는지 판단한다. 없으면 nextCursor 는 null.
+     *       └─> limit 은 최대 MAX_LIMIT 건. limit, cursor 가 잘못되면 400 으로 응답한다.
+     *    3. orderItems 는 v3.1 과 동일하게 'default_batch_fetch_size' 로 가져온다.
+     */
+    @GetMapping("/api/v3.2/orders")
+    public CursorResult<List<OrderDto>> orderV3_cursor(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit" , defaultValue = "100") int limit)
+    {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit 은 1 ~ " + MAX_LIMIT + " 이어야 합니다. limit=" + limit);
+        }
+        List<Order> orders = orderRepository.findAllWithMemberDeliveryAfter(decodeCursor(cursor), limit + 1);
+    
+        String nextCursor = null;
+        if (orders.size() > limit) {
+            orders = orders.subList(0, limit);
+            nextCursor = encodeCursor(orders.get(limit - 1).getId());
+        }
+    
+        List<OrderDto> result = orders.stream()
+                .map(o -> new OrderDto(o))
+                .collect(toList());
+        return new CursorResult<>(result, result.size(), nextCursor);
+    }
+    
+    private static String encodeCursor(Long lastOrderId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(lastOrderId).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static Long decodeCursor(String cursor) {
+        if (!StringUtils.hasText(cursor)) {
+            return 0L;
+        }
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "잘못된 cursor 입니다. cursor=" + cursor, e);
+        }
+    }
+    
+    /*
+     * v4, v5 는 주문이 바뀌지 않는 한 같은 결과를 반환하므로 OrderQueryCache 를 거쳐서 캐시에 없는 주문만 조회한다.
+     *    v4 : 캐시에 없는 주문마다 주문상품을 따로 조회한다. (N + 1)
+     *    v5 : 캐시에 없는 주문의 주문상품을 in 절로 한번에 조회한다.
+     * └─> 둘 다 If-None-Match 가 지금 ETag 와 같으면 캐시도 보지 않고 304 를 반환한다.
+     */
     @GetMapping("/api/v4/orders")
-    public List<OrderQueryDto> orderV4() {
-        return orderQueryRepository.findOrderQueryDtos();
+    public List<OrderQueryDto> orderV4(WebRequest webRequest) {
+        if (ConditionalRequests.notModified(webRequest, aggregateVersions::orderETag)) {
+            return null;    //304 Not Modified
+        }
+        return orderQueryCache.findAllOneByOne();
     }
     
     
     
     @GetMapping("/api/v5/orders")
-    public List<OrderQueryDto> orderV5() {
-        return orderQueryRepository.findAllByDto_optimization();
+    public List<OrderQueryDto> orderV5(WebRequest webRequest) {
+        if (ConditionalRequests.notModified(webRequest, aggregateVersions::orderETag)) {
+            return null;    //304 Not Modified
+        }
+        return orderQueryCache.findAll();
         
         /*
             =============================================================================
@@ -131,6 +230,16 @@ public class OrderApiController {
          */
     }
     
+    @GetMapping("/api/orders/cache/stats")
+    public OrderQueryCache.Stats orderCacheStats() {
+        return orderQueryCache.stats();
+    }
+    
+    @GetMapping("/api/orders/retry/stats")
+    public OrderRetryTemplate.Stats orderRetryStats() {
+        return orderRetryTemplate.stats();
+    }
+    
     @GetMapping("/api/v6/orders")
     public List<OrderFlatDto> orderV6() {
         return orderQueryRepository.findAllByDto_flat();
@@ -170,40 +279,170 @@ public class OrderApiController {
     }
     
     
+    /*
+     * v6 의 결과를 NDJSON (한 줄에 JSON 하나) 으로 내려주는 export 용 API
+     *    1. 조회 결과를 List 로 모으지 않고 DB 커서에서 한 건 읽을 때마다 바로 응답에 쓴다.
+     *       └─> 결과가 아무리 커도 힙 사용량이 일정하다.
+     *    2. 첫 건은 바로 flush 해서 쿼리가 끝나기 전에 클라이언트가 받기 시작할 수 있게 한다.
+     *       이후에는 fetchSize 건마다 flush 한다.
+     *    3. 드라이버가 한번에 읽어서 들고 있는 건수라서 최대 MAX_EXPORT_FETCH_SIZE 건까지만 받는다.
+     */
+    @GetMapping("/api/v6/orders/export")
+    public void orderV6_export(
+            @RequestParam(value = "fetchSize", defaultValue = "500") int fetchSize,
+            HttpServletResponse response) throws IOException
+    {
+        if (fetchSize < 1 || fetchSize > MAX_EXPORT_FETCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "fetchSize 는 1 ~ " + MAX_EXPORT_FETCH_SIZE + " 이어야 합니다. fetchSize=" + fetchSize);
+        }
+        response.setContentType(NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        
+        ObjectWriter writer = objectMapper.writerFor(OrderFlatDto.class);
+        OutputStream out = response.getOutputStream();
+        int[] written = {0};
+        
+        orderQueryRepository.forEachByDto_flat(fetchSize, row -> {
+            try {
+                out.write(writer.writeValueAsBytes(row));
+                out.write('\n');
+                if (++written[0] == 1 || written[0] % fetchSize == 0) {
+                    out.flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
+    }
+    
+    /*
+     * flat 조회 결과를 OrderQueryDto 형태로 바꿔서 반환
+     * └─> groupingBy 로 묶으면 row 마다 key 용 OrderQueryDto 와 HashMap entry 가 만들어지고 순서도 보장되지 않는다.
+     *     flat 조회를 o.id 로 정렬해두고 OrderFlatAssembler 로 한 번에 훑으면서 묶는다.
+     */
     @GetMapping("/api/v6.1/orders")
     public List<OrderQueryDto> orderV6_mapping_OrderQueryDto() {
-        List<OrderFlatDto> flats = orderQueryRepository.findAllByDto_flat();
-    
-        return flats.stream()
-                .collect(
-                        groupingBy(
-                                o -> new OrderQueryDto(
-                                        o.getOrderId()
-                                        , o.getName()
-                                        , o.getOrderDate()
-                                        , o.getOrderStatus()
-                                        , o.getAddress()
-                                ),
-                                mapping(o -> new OrderItemQueryDto(
-                                        o.getOrderId()
-                                        , o.getItemName()
-                                        , o.getOrderPrice()
-                                        , o.getCount())
-                                        , toList()
-                                )
-                        )
-                )
-                .entrySet().stream()
-                    .map(
-                            e -> new OrderQueryDto(
-                                e.getKey().getOrderId()
-                                , e.getKey().getName()
-                                , e.getKey().getOrderDate()
-                                , e.getKey().getOrderStatus()
-                                , e.getKey().getAddress()
-                                , e.getValue()
-                            )
-                    ).collect(toList());
+        return orderQueryRepository.findAllByDto_flat_grouped();
+    }
+    
+    
+    /*
+     * 주문이 생성 / 취소될 때 같이 갱신되는 order_summary 테이블에서 조회
+     * └─> 4개 테이블을 join 하지 않고 order_summary 한 테이블만 PK 순서대로 읽는다.
+     *     v3.2 와 같이 limit 은 최대 MAX_LIMIT 건. offset, limit 이 잘못되면 400 으로 응답한다.
+     */
+    @GetMapping("/api/v7/orders")
+    public List<OrderSummaryDto> orderV7(
+            @RequestParam(value = "offset", defaultValue = "0"  ) int offset,
+            @RequestParam(value = "limit" , defaultValue = "100") int limit)
+    {
+        if (offset < 0 || limit < 1 || limit > MAX_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "offset 은 0 이상, limit 은 1 ~ " + MAX_LIMIT + " 이어야 합니다. offset=" + offset + ", limit=" + limit);
+        }
+        return orderSummaryRepository.findAll(offset, limit).stream()
+                .map(OrderSummaryDto::new)
+                .collect(toList());
+    }
+    
+    
+    /*
+     * 여러 상품을 담은 주문 한 건 등록
+     */
+    @PostMapping("/api/orders")
+    public CreateOrderResponse saveOrder(@RequestBody @Valid CreateMultiLineOrderRequest request) {
+        List<OrderLine> lines = request.getLines().stream()
+                .map(l -> new OrderLine(l.getItemId(), l.getCount()))
+                .collect(toList());
+        Long orderId = orderRetryTemplate.execute(() -> orderService.order(request.getMemberId(), lines));
+        return new CreateOrderResponse(orderId);
+    }
+    
+    @Data
+    static class CreateMultiLineOrderRequest {
+        @NotNull
+        private Long memberId;
+        @NotEmpty
+        @Size(max = 100)
+        private List<@Valid OrderLineRequest> lines;
+    }
+    
+    @Data
+    static class OrderLineRequest {
+        @NotNull
+        private Long itemId;
+        @Min(1)
+        private int count;
+    }
+    
+    @Data
+    @AllArgsConstructor
+    static class CreateOrderResponse {
+        private Long orderId;
+    }
+    
+    
+    /*
+     * 주문 일괄 취소
+     * └─> orderIds 또는 search 중 하나로 대상을 정한다. (OrderService.cancelOrders)
+     */
+    @PostMapping("/api/orders/cancel")
+    public BulkCancelResult cancelOrders(@RequestBody @Valid BulkCancelRequest request) {
+        if ((request.getOrderIds() == null) == (request.getSearch() == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "orderIds 와 search 중 하나만 지정해야 합니다.");
+        }
+        if (request.getOrderIds() != null) {
+            return orderRetryTemplate.execute(() -> orderService.cancelOrders(request.getOrderIds()));
+        }
+        return orderRetryTemplate.execute(() -> orderService.cancelOrders(request.getSearch()));
+    }
+    
+    @Data
+    static class BulkCancelRequest {
+        @Size(max = OrderService.MAX_BULK_CANCEL)
+        private List<@NotNull Long> orderIds;
+        private OrderSearch search;
+    }
+    
+    
+    /*
+     * 여러 건의 주문을 한번에 등록
+     * └─> 회원, 상품을 한번에 조회하고 insert 는 JDBC batch 로 처리한다. (OrderService.orders)
+     */
+    @PostMapping("/api/orders/batch")
+    public BatchOrderResponse saveOrdersBatch(@RequestBody @Valid BatchOrderRequest request) {
+        List<OrderCommand> commands = request.getOrders().stream()
+                .map(o -> new OrderCommand(o.getMemberId(), o.getItemId(), o.getCount()))
+                .collect(toList());
+        List<Long> orderIds = orderRetryTemplate.execute(() -> orderService.orders(commands));
+        return new BatchOrderResponse(orderIds, orderIds.size());
+    }
+    
+    @Data
+    static class BatchOrderRequest {
+        @NotEmpty
+        @Size(max = 1000)
+        private List<@Valid CreateOrderRequest> orders;
+    }
+    
+    @Data
+    static class CreateOrderRequest {
+        @NotNull
+        private Long memberId;
+        @NotNull
+        private Long itemId;
+        @Min(1)
+        private int count;
+    }
+    
+    @Data
+    @AllArgsConstructor
+    static class BatchOrderResponse {
+        private List<Long> orderIds;
+        private int count;
     }
     
     
@@ -259,6 +498,35 @@ public class OrderApiController {
         }
     }
     
+    @Getter
+    @AllArgsConstructor
+    static class CursorResult<T> {
+        private T data;
+        private int count;
+        private String nextCursor;
+    }
+    
+    @Getter
+    static class OrderSummaryDto {
+        private Long orderId;
+        private String name;
+        private LocalDateTime orderDate;
+        private OrderStatus orderStatus;
+        private Address address;
+        private int itemCount;
+        private int totalPrice;
+        
+        public OrderSummaryDto(OrderSummary orderSummary) {
+            orderId = orderSummary.getOrderId();
+            name = orderSummary.getMemberName();
+            orderDate = orderSummary.getOrderDate();
+            orderStatus = orderSummary.getStatus();
+            address = orderSummary.getAddress();
+            itemCount = orderSummary.getItemCount();
+            totalPrice = orderSummary.getTotalPrice();
+        }
+    }
+    
     @Getter
     static class OrderItemDto {
         private String itemName;    // 상품 명
@@ -0,0 +1,176 @@
+package jpabook.jpashop.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import jpabook.jpashop.api.OrderApiController.OrderDto;
+import jpabook.jpashop.api.OrderApiController.OrderItemDto;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.order.query.OrderFlatDto;
+import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * 주문 조회 API (v3, v5, v6) 응답 DTO 를 직접 쓰는 serializer 모음
+ * <p>
+ * 기본 BeanSerializer 는 getter 를 reflection 으로 찾아서 호출한다.
+ * 필드 이름을 미리 인코딩해 두고 순서대로 바로 쓰면 그 비용이 없다.
+ * └─> 필드 이름, 순서, 날짜 형식은 지금 JSON 응답과 같게 맞춰서 CBOR / Smile 로 받아도 구조가 같다.
+ * <p>
+ * JSON 응답은 그대로 두고 CBOR / Smile 용 ObjectMapper 에만 등록한다. (BinaryFormatConfig)
+ */
+public class OrderBinaryModule extends SimpleModule {
+    
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    
+    private static final SerializableString ORDER_ID = new SerializedString("orderId");
+    private static final SerializableString NAME = new SerializedString("name");
+    private static final SerializableString ORDER_DATE = new SerializedString("orderDate");
+    private static final SerializableString ORDER_STATUS = new SerializedString("orderStatus");
+    private static final SerializableString ADDRESS = new SerializedString("address");
+    private static final SerializableString CITY = new SerializedString("city");
+    private static final SerializableString STREET = new SerializedString("street");
+    private static final SerializableString ZIPCODE = new SerializedString("zipcode");
+    private static final SerializableString ORDER_ITEMS = new SerializedString("orderItems");
+    private static final SerializableString ITEM_NAME = new SerializedString("itemName");
+    private static final SerializableString ORDER_PRICE = new SerializedString("orderPrice");
+    private static final SerializableString COUNT = new SerializedString("count");
+    
+    public OrderBinaryModule() {
+        super("OrderBinaryModule");
+        addSerializer(OrderDto.class, new OrderDtoSerializer());
+        addSerializer(OrderQueryDto.class, new OrderQueryDtoSerializer());
+        addSerializer(OrderFlatDto.class, new OrderFlatDtoSerializer());
+    }
+    
+    static class OrderDtoSerializer extends StdSerializer<OrderDto> {
+    
+        OrderDtoSerializer() {
+            super(OrderDto.class);
+        }
+    
+        @Override
+        public void serialize(OrderDto dto, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            writeOrder(gen, dto.getOrderId(), dto.getName(), dto.getOrderDate(), dto.getOrderStatus(), dto.getAddress());
+    
+            gen.writeFieldName(ORDER_ITEMS);
+            List<OrderItemDto> orderItems = dto.getOrderItems();
+            if (orderItems == null) {
+                gen.writeNull();
+            } else {
+                gen.writeStartArray(orderItems.size());
+                for (OrderItemDto orderItem : orderItems) {
+                    gen.writeStartObject();
+                    writeOrderItem(gen, orderItem.getItemName(), orderItem.getOrderPrice(), orderItem.getCount());
+                    gen.writeEndObject();
+                }
+                gen.writeEndArray();
+            }
+            gen.writeEndObject();
+        }
+    }
+    
+    static class OrderQueryDtoSerializer extends StdSerializer<OrderQueryDto> {
+    
+        OrderQueryDtoSerializer() {
+            super(OrderQueryDto.class);
+        }
+    
+        @Override
+        public void serialize(OrderQueryDto dto, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            writeOrder(gen, dto.getOrderId(), dto.getName(), dto.getOrderDate(), dto.getOrderStatus(), dto.getAddress());
+    
+            gen.writeFieldName(ORDER_ITEMS);
+            List<OrderItemQueryDto> orderItems = dto.getOrderItems();
+            if (orderItems == null) {
+                gen.writeNull();
+            } else {
+                gen.writeStartArray(orderItems.size());
+                for (OrderItemQueryDto orderItem : orderItems) {
+                    //orderId 는 @JsonIgnore 대상이므로 쓰지 않는다.
+                    gen.writeStartObject();
+                    writeOrderItem(gen, orderItem.getItemName(), orderItem.getOrderPrice(), orderItem.getCount());
+                    gen.writeEndObject();
+                }
+                gen.writeEndArray();
+            }
+            gen.writeEndObject();
+        }
+    }
+    
+    static class OrderFlatDtoSerializer extends StdSerializer<OrderFlatDto> {
+    
+        OrderFlatDtoSerializer() {
+            super(OrderFlatDto.class);
+        }
+    
+        @Override
+        public void serialize(OrderFlatDto dto, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            writeOrder(gen, dto.getOrderId(), dto.getName(), dto.getOrderDate(), dto.getOrderStatus(), dto.getAddress());
+            writeOrderItem(gen, dto.getItemName(), dto.getOrderPrice(), dto.getCount());
+            gen.writeEndObject();
+        }
+    }
+    
+    private static void writeOrder(JsonGenerator gen, Long orderId, String name, LocalDateTime orderDate,
+                                   OrderStatus orderStatus, Address address) throws IOException {
+        gen.writeFieldName(ORDER_ID);
+        if (orderId == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(orderId);
+        }
+    
+        gen.writeFieldName(NAME);
+        gen.writeString(name);
+    
+        gen.writeFieldName(ORDER_DATE);
+        if (orderDate == null) {
+            gen.writeNull();
+        } else {
+            gen.writeString(orderDate.format(DATE_FORMAT));
+        }
+    
+        gen.writeFieldName(ORDER_STATUS);
+        if (orderStatus == null) {
+            gen.writeNull();
+        } else {
+            gen.writeString(orderStatus.name());
+        }
+    
+        gen.writeFieldName(ADDRESS);
+        if (address == null) {
+            gen.writeNull();
+        } else {
+            gen.writeStartObject();
+            gen.writeFieldName(CITY);
+            gen.writeString(address.getCity());
+            gen.writeFieldName(STREET);
+            gen.writeString(address.getStreet());
+            gen.writeFieldName(ZIPCODE);
+            gen.writeString(address.getZipcode());
+            gen.writeEndObject();
+        }
+    }
+    
+    private static void writeOrderItem(JsonGenerator gen, String itemName, int orderPrice, int count) throws IOException {
+        gen.writeFieldName(ITEM_NAME);
+        gen.writeString(itemName);
+        gen.writeFieldName(ORDER_PRICE);
+        gen.writeNumber(orderPrice);
+        gen.writeFieldName(COUNT);
+        gen.writeNumber(count);
+    }
+}
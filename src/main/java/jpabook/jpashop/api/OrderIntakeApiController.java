@@ -0,0 +1,68 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.service.OrderCommand;
+import jpabook.jpashop.service.OrderIntakeService;
+import jpabook.jpashop.service.OrderIntakeService.IntakeStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.net.URI;
+
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "jpashop.order-intake.enabled", havingValue = "true")
+public class OrderIntakeApiController {
+    
+    private final OrderIntakeService orderIntakeService;
+    
+    /*
+     * 주문을 접수만 하고 202 Accepted 로 바로 응답한다.
+     * └─> 처리 결과는 Location 의 접수 상태 조회로 확인한다.
+     */
+    @PostMapping("/api/orders/intake")
+    public ResponseEntity<AcceptOrderResponse> acceptOrder(@RequestBody @Valid AcceptOrderRequest request) {
+        String acceptanceId = orderIntakeService.accept(
+                new OrderCommand(request.getMemberId(), request.getItemId(), request.getCount()));
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/orders/intake/" + acceptanceId))
+                .body(new AcceptOrderResponse(acceptanceId));
+    }
+    
+    @GetMapping("/api/orders/intake/{acceptanceId}")
+    public ResponseEntity<IntakeStatus> intakeStatus(@PathVariable("acceptanceId") String acceptanceId) {
+        IntakeStatus status = orderIntakeService.findStatus(acceptanceId);
+        return status == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(status);
+    }
+    
+    @GetMapping("/api/orders/intake/stats")
+    public OrderIntakeService.Stats intakeStats() {
+        return orderIntakeService.stats();
+    }
+    
+    @Data
+    static class AcceptOrderRequest {
+        @NotNull
+        private Long memberId;
+        @NotNull
+        private Long itemId;
+        @Min(1)
+        private int count;
+    }
+    
+    @Data
+    @AllArgsConstructor
+    static class AcceptOrderResponse {
+        private String acceptanceId;
+    }
+}
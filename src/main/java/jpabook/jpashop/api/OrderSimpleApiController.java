@@ -7,10 +7,12 @@ import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
 import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto;
 import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryRepository;
+import jpabook.jpashop.service.AggregateVersions;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -37,6 +39,7 @@ public class OrderSimpleApiController {
     
     private final OrderRepository orderRepository;
     private final OrderSimpleQueryRepository orderSimpleQueryRepository;
+    private final AggregateVersions aggregateVersions;
     
     @GetMapping("/api/v1/simple-orders")
     public List<Order> ordersV1() {
@@ -48,8 +51,14 @@ public class OrderSimpleApiController {
         return all;
     }
     
+    /*
+     * v2 ~ v4 는 If-None-Match 가 지금 ETag 와 같으면 조회하지 않고 304 를 반환한다. (AggregateVersions)
+     */
     @GetMapping("/api/v2/simple-orders")
-    public List<SimpleOrderDto> ordersV2() {
+    public List<SimpleOrderDto> ordersV2(WebRequest webRequest) {
+        if (ConditionalRequests.notModified(webRequest, aggregateVersions::orderETag)) {
+            return null;    //304 Not Modified
+        }
         return orderRepository.findAllByString(new OrderSearch()).stream()
                 .map(SimpleOrderDto::new)
                 .collect(toList());
@@ -120,7 +129,10 @@ public class OrderSimpleApiController {
     }
     
     @GetMapping("/api/v3/simple-orders")
-    public List<SimpleOrderDto> ordersV3() {
+    public List<SimpleOrderDto> ordersV3(WebRequest webRequest) {
+        if (ConditionalRequests.notModified(webRequest, aggregateVersions::orderETag)) {
+            return null;    //304 Not Modified
+        }
         List<Order> orders = orderRepository.findAllWithMemberDelivery();
         return orders.stream()
                 .map(SimpleOrderDto::new)
@@ -158,7 +170,10 @@ public class OrderSimpleApiController {
     }
     
     @GetMapping("/api/v4/simple-orders")
-    public List<OrderSimpleQueryDto> ordersV4() {
+    public List<OrderSimpleQueryDto> ordersV4(WebRequest webRequest) {
+        if (ConditionalRequests.notModified(webRequest, aggregateVersions::orderETag)) {
+            return null;    //304 Not Modified
+        }
         return orderSimpleQueryRepository.findOrderDtos();
         /*
             =============================================================================
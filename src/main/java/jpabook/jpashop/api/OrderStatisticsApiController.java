@@ -0,0 +1,71 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.service.OrderStatisticsService;
+import jpabook.jpashop.service.OrderStatisticsService.DailyStat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequiredArgsConstructor
+public class OrderStatisticsApiController {
+    
+    private static final int MAX_DAYS = 366;
+    
+    private final OrderStatisticsService orderStatisticsService;
+    
+    /*
+     * 기간을 주지 않으면 최근 30일 통계를 반환한다.
+     */
+    @GetMapping("/api/orders/stats")
+    public StatsResult orderStats(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to"  , required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to)
+    {
+        LocalDate end = to == null ? LocalDate.now() : to;
+        LocalDate start = from == null ? end.minusDays(29) : from;
+        if (start.isAfter(end) || start.plusDays(MAX_DAYS).isBefore(end)) {
+            throw new IllegalArgumentException("조회 기간이 올바르지 않습니다. from=" + start + ", to=" + end);
+        }
+        
+        List<DailyStat> daily = orderStatisticsService.findDailyStats(start, end);
+        
+        Map<OrderStatus, StatusTotal> totals = new EnumMap<>(OrderStatus.class);
+        for (OrderStatus status : OrderStatus.values()) {
+            totals.put(status, new StatusTotal(0, 0));
+        }
+        for (DailyStat stat : daily) {
+            StatusTotal total = totals.get(stat.getOrderStatus());
+            total.setOrderCount(total.getOrderCount() + stat.getOrderCount());
+            total.setRevenue(total.getRevenue() + stat.getRevenue());
+        }
+        
+        return new StatsResult(start, end, totals, daily);
+    }
+    
+    @Data
+    @AllArgsConstructor
+    static class StatsResult {
+        private LocalDate from;
+        private LocalDate to;
+        private Map<OrderStatus, StatusTotal> totals;
+        private List<DailyStat> daily;
+    }
+    
+    @Data
+    @AllArgsConstructor
+    static class StatusTotal {
+        private long orderCount;
+        private long revenue;
+    }
+}
@@ -0,0 +1,66 @@
+package jpabook.jpashop.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import jpabook.jpashop.api.OrderBinaryModule;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * 요청의 Accept 헤더가 application/cbor 나 application/x-jackson-smile 이면 JSON 대신 바이너리로 응답한다.
+ * └─> 내부 서비스가 JSON 을 파싱하는 비용이 서버의 조회 비용보다 커서 추가했다.
+ *     Accept 가 없거나 application/json 이면 지금까지와 같은 JSON 응답이다.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class BinaryFormatConfig implements WebMvcConfigurer {
+    
+    private final Jackson2ObjectMapperBuilder objectMapperBuilder;     //spring.jackson.* 설정과 모듈 빈이 적용된 builder
+    
+    /*
+     * 라이브러리가 classpath 에 있으면 스프링 MVC 가 JSON 컨버터 뒤에 Smile / CBOR 컨버터를 기본으로 넣는다.
+     * 그 자리를 그대로 바꿔 끼운다.
+     * └─> HttpMessageConverter 빈으로 등록하면 스프링 부트가 JSON 컨버터보다 앞에 넣어서
+     *     Accept: *\/* 요청도 CBOR 로 응답하게 된다.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        replace(converters, MappingJackson2CborHttpMessageConverter.class,
+                new MappingJackson2CborHttpMessageConverter(binaryObjectMapper(new CBORFactory())));
+        replace(converters, MappingJackson2SmileHttpMessageConverter.class,
+                new MappingJackson2SmileHttpMessageConverter(binaryObjectMapper(new SmileFactory())));
+    }
+    
+    private void replace(List<HttpMessageConverter<?>> converters,
+                         Class<?> type, HttpMessageConverter<?> converter) {
+        ListIterator<HttpMessageConverter<?>> iterator = converters.listIterator();
+        while (iterator.hasNext()) {
+            if (type.isInstance(iterator.next())) {
+                iterator.set(converter);
+                return;
+            }
+        }
+        converters.add(converter);
+    }
+    
+    /*
+     * JSON ObjectMapper 와 같은 설정 (spring.jackson.*, Hibernate5Module 등) 을 그대로 적용한다.
+     * └─> builder 를 바꾸지 않고 configure 로 설정만 옮긴다. (JSON ObjectMapper 도 같은 builder 로 만든다)
+     * 주문 조회 DTO 는 OrderBinaryModule 의 serializer 로 reflection 없이 쓴다.
+     */
+    private ObjectMapper binaryObjectMapper(JsonFactory factory) {
+        ObjectMapper objectMapper = new ObjectMapper(factory);
+        objectMapperBuilder.configure(objectMapper);
+        return objectMapper.registerModule(new OrderBinaryModule());
+    }
+}
@@ -0,0 +1,244 @@
+package jpabook.jpashop.config;
+
+import jpabook.jpashop.domain.IdempotencyRecord;
+import jpabook.jpashop.service.IdempotencyService;
+import jpabook.jpashop.service.IdempotencyService.Lookup;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 주문, 회원 등록 요청의 Idempotency-Key 처리
+ * <p>
+ * 클라이언트가 네트워크 오류로 같은 요청을 다시 보내도 주문, 회원이 두 번 만들어지지 않도록
+ * 같은 키로 성공(2xx, 3xx)한 응답을 저장해두고 그대로 다시 돌려준다. (OrderService, MemberService 를 호출하지 않는다.)
+ * └─> 처리 중인 키로 또 들어오면 409, 같은 키를 다른 요청 (URI 나 파라미터 / 본문이 다른 요청) 에 쓰면 422
+ * <p>
+ * 요청이 같은지는 파라미터 / 본문의 SHA-256 으로 비교한다.
+ *    1. form 요청은 파라미터를 이름 순으로 정렬해서 (서블릿 컨테이너가 본문을 파라미터로 읽는다)
+ *    2. 그 밖의 요청은 query string 과 본문을 그대로 사용한다.
+ *       └─> 본문을 먼저 읽으므로 컨트롤러가 다시 읽을 수 있게 메모리에 들고 있는 요청으로 바꿔서 넘긴다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdempotencyFilter extends OncePerRequestFilter {
+    
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 100;
+    
+    private static final Set<String> PATHS = new HashSet<>(Arrays.asList(
+            "/order",
+            "/members/new",
+            "/api/v1/members",
+            "/api/v2/members",
+            "/api/orders",
+            "/api/orders/batch",
+            "/api/orders/cancel",
+            "/api/orders/intake"
+    ));
+    
+    private final IdempotencyService idempotencyService;
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || request.getHeader(IDEMPOTENCY_KEY) == null
+                || !PATHS.contains(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String key = request.getHeader(IDEMPOTENCY_KEY);
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), IDEMPOTENCY_KEY + " 는 1 ~ " + MAX_KEY_LENGTH + " 자여야 합니다.");
+            return;
+        }
+        
+        HttpServletRequest target = isForm(request) ? request : new CachedBodyRequest(request);
+        String requestHash = requestHash(target);
+        
+        Lookup lookup = idempotencyService.begin(key, request.getMethod(), request.getRequestURI(), requestHash);
+        switch (lookup.getState()) {
+            case IN_PROGRESS:
+                response.sendError(HttpStatus.CONFLICT.value(), "같은 " + IDEMPOTENCY_KEY + " 의 요청을 처리하고 있습니다.");
+                return;
+            case REPLAY:
+                replay(lookup.getRecord(), request, requestHash, response);
+                return;
+            default:
+                execute(key, target, response, filterChain);
+        }
+    }
+    
+    private static boolean isForm(HttpServletRequest request) {
+        return request.getContentType() != null
+                && request.getContentType().startsWith(MediaType.APPLICATION_FORM_URLENCODED_VALUE);
+    }
+    
+    private static String requestHash(HttpServletRequest request) {
+        MessageDigest digest = sha256();
+        if (request instanceof CachedBodyRequest) {
+            if (request.getQueryString() != null) {
+                digest.update(request.getQueryString().getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) 0);
+            digest.update(((CachedBodyRequest) request).body);
+        } else {
+            new TreeMap<>(request.getParameterMap()).forEach((name, values) -> {
+                digest.update(name.getBytes(StandardCharsets.UTF_8));
+                for (String value : values) {
+                    digest.update((byte) 0);
+                    digest.update(value.getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((byte) '\n');
+            });
+        }
+        
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+    
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private void execute(String key, HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean completed = false;
+        try {
+            filterChain.doFilter(request, wrapper);
+            
+            int status = wrapper.getStatus();
+            if (status >= 200 && status < 400) {
+                completed = complete(key, request, wrapper);
+            }
+        } finally {
+            if (!completed) {
+                idempotencyService.release(key);
+            }
+            wrapper.copyBodyToResponse();
+        }
+    }
+    
+    /*
+     * 응답 저장에 실패해도 요청은 이미 처리되었으므로 응답은 그대로 보낸다.
+     */
+    private boolean complete(String key, HttpServletRequest request, ContentCachingResponseWrapper wrapper) {
+        try {
+            idempotencyService.complete(key,
+                    wrapper.getStatus(), wrapper.getContentType(), wrapper.getHeader(HttpHeaders.LOCATION),
+                    wrapper.getContentAsByteArray());
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("idempotency record save failed. key={}", key, e);
+            return false;
+        }
+    }
+    
+    private void replay(IdempotencyRecord record, HttpServletRequest request, String requestHash,
+                        HttpServletResponse response) throws IOException {
+        if (!record.isSameRequest(request.getMethod(), request.getRequestURI(), requestHash)) {
+            response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(), "다른 요청에 사용한 " + IDEMPOTENCY_KEY + " 입니다.");
+            return;
+        }
+        
+        response.setStatus(record.getStatus());
+        response.setHeader(IDEMPOTENT_REPLAYED, "true");
+        if (record.getLocation() != null) {
+            response.setHeader(HttpHeaders.LOCATION, record.getLocation());
+        }
+        if (record.getContentType() != null) {
+            response.setContentType(record.getContentType());
+        }
+        if (record.getBody() != null && record.getBody().length > 0) {
+            response.setContentLength(record.getBody().length);
+            response.getOutputStream().write(record.getBody());
+        }
+    }
+    
+    /**
+     * 본문을 미리 읽어서 들고 있다가 컨트롤러가 읽을 때 다시 내주는 요청
+     */
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+        
+        private final byte[] body;
+        
+        CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = StreamUtils.copyToByteArray(request.getInputStream());
+        }
+        
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+                
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+                
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+                
+                @Override
+                public int read() {
+                    return in.read();
+                }
+                
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+        
+        @Override
+        public BufferedReader getReader() throws IOException {
+            String encoding = getCharacterEncoding() == null ? StandardCharsets.UTF_8.name() : getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(), encoding));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package jpabook.jpashop.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class OrderQueryConfig {
+    
+    /*
+     * OrderQueryRepository 에서 in 절 chunk 를 병렬로 조회할 때 사용하는 executor
+     * └─> 스레드 수와 큐 크기를 제한해서 커넥션 풀을 다 잡아먹지 않도록 한다.
+     *     큐가 가득 차면 호출한 스레드가 직접 실행한다. (CallerRunsPolicy)
+     */
+    @Bean
+    public ThreadPoolTaskExecutor orderQueryExecutor(@Value("${jpashop.order-query.parallelism:4}") int parallelism) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setQueueCapacity(parallelism * 4);
+        executor.setThreadNamePrefix("order-query-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+}
@@ -1,60 +1,97 @@
 package jpabook.jpashop.controller;
 
-import jpabook.jpashop.domain.Item;
-import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.repository.OrderFormCatalog;
 import jpabook.jpashop.repository.OrderSearch;
-import jpabook.jpashop.service.ItemService;
-import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderCommand;
+import jpabook.jpashop.service.OrderIntakeService;
+import jpabook.jpashop.service.OrderLine;
+import jpabook.jpashop.service.OrderRetryTemplate;
 import jpabook.jpashop.service.OrderService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Controller
 @RequiredArgsConstructor
 public class OrderController {
     
+    private static final int ORDER_PAGE_SIZE = 20;
+    
     private final OrderService orderService;
-    private final MemberService memberService;
-    private final ItemService itemService;
+    private final OrderFormCatalog orderFormCatalog;
+    private final OrderRetryTemplate orderRetryTemplate;
+    private final ObjectProvider<OrderIntakeService> orderIntakeService;     //jpashop.order-intake.enabled=true 일 때만 존재
     
     @GetMapping("/order")
     public String createForm(Model model) {
         
-        List<Member> members = memberService.findMembers();
-        List<Item> items = itemService.findItems();
+        //회원 / 상품 엔티티를 조회하지 않고 메모리에 들고 있는 id, 이름 목록으로 그린다.
+        OrderFormCatalog.Snapshot catalog = orderFormCatalog.getSnapshot();
         
-        model.addAttribute("members", members);
-        model.addAttribute("items", items);
+        model.addAttribute("members", catalog.getMembers());
+        model.addAttribute("items", catalog.getItems());
         
         return "order/orderForm";
     }
     
+    /*
+     * itemId, count 를 여러 번 보내면 한 주문에 여러 상품을 담는다.
+     * 비동기 주문 접수를 켜면 상품 하나짜리 주문은 접수만 하고 바로 돌아간다. (OrderIntakeService)
+     */
     @PostMapping("/order")
     public String order(@RequestParam("memberId") Long memberId,
-                        @RequestParam("itemId") Long itemId,
-                        @RequestParam("count") int count) {
+                        @RequestParam("itemId") List<Long> itemIds,
+                        @RequestParam("count") List<Integer> counts) {
         
-        orderService.order(memberId, itemId, count);
+        if (itemIds.size() != counts.size()) {
+            throw new IllegalArgumentException("상품과 주문수량의 개수가 다릅니다.");
+        }
+        OrderIntakeService intake = orderIntakeService.getIfAvailable();
+        if (itemIds.size() == 1 && intake != null) {
+            intake.accept(new OrderCommand(memberId, itemIds.get(0), counts.get(0)));
+        } else if (itemIds.size() == 1) {
+            orderRetryTemplate.execute(() -> orderService.order(memberId, itemIds.get(0), counts.get(0)));
+        } else {
+            List<OrderLine> lines = new ArrayList<>(itemIds.size());
+            for (int i = 0; i < itemIds.size(); i++) {
+                lines.add(new OrderLine(itemIds.get(i), counts.get(i)));
+            }
+            orderRetryTemplate.execute(() -> orderService.order(memberId, lines));
+        }
         
         return "redirect:/orders";
     }
     
+    /*
+     * 검색 결과를 ORDER_PAGE_SIZE 건씩 나눠서 보여준다.
+     * └─> 전체 건수로 마지막 페이지를 구해서 그보다 큰 page 는 마지막 페이지로 맞춘다.
+     */
     @GetMapping("/orders")
-    public String orderList(@ModelAttribute("orderSearch") OrderSearch orderSearch, Model model) {
-        List<Order> orders = orderService.findOrders(orderSearch);
+    public String orderList(@ModelAttribute("orderSearch") OrderSearch orderSearch,
+                            @RequestParam(value = "page", defaultValue = "0") int page,
+                            Model model) {
+        long orderCount = orderService.countOrders(orderSearch);
+        int lastPage = (int) Math.max((orderCount - 1) / ORDER_PAGE_SIZE, 0);
+        int currentPage = Math.min(Math.max(page, 0), lastPage);
+        
+        List<Order> orders = orderService.findOrders(orderSearch, currentPage * ORDER_PAGE_SIZE, ORDER_PAGE_SIZE);
         model.addAttribute("orders", orders);
+        model.addAttribute("orderCount", orderCount);
+        model.addAttribute("page", currentPage);
+        model.addAttribute("lastPage", lastPage);
         
         return "order/orderList";
     }
     
     @PostMapping("/orders/{orderId}/cancel")
     public String cancelOrder(@PathVariable("orderId") Long orderId) {
-        orderService.cancelOrder(orderId);
+        orderRetryTemplate.run(() -> orderService.cancelOrder(orderId));
         return "redirect:/orders";
     }
     
@@ -2,21 +2,42 @@ package jpabook.jpashop.domain;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
+/*
+ * 계층 구조는 parent / child 로 표현하고, 조회용으로 materialized path 를 같이 저장한다.
+ * └─> path 는 루트부터 자신까지의 id 를 '/' 로 이은 값이다. (예: /1/5/12/)
+ *     'path like /1/5/%' 한번으로 5번 카테고리의 모든 하위 카테고리를 인덱스로 찾을 수 있다.
+ */
 @Entity
+@Table(indexes = @Index(name = "idx_category_path", columnList = "path"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter @Setter
 public class Category {
 
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "category_seq_generator")
+    @GenericGenerator(name = "category_seq_generator", strategy = PooledSequenceGenerator.STRATEGY, parameters = {
+            @Parameter(name = "sequence_name", value = "category_seq"),
+            @Parameter(name = "increment_size", value = "" + IdAllocationSize.CATEGORY)})
     @Column(name = "category_id")
     private Long id;
 
     private String name;
 
+    private String path;    //루트부터 자신까지의 id 경로 (CategoryRepository.save 에서 id 가 생긴 뒤 채운다.)
+
+    private int depth;      //루트는 0
+
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @ManyToMany
     @JoinTable(name = "category_item",
             joinColumns = @JoinColumn(name = "category_id"),
@@ -27,13 +48,51 @@ public class Category {
     @JoinColumn(name = "parent_id")
     private Category parent;
 
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @OneToMany(mappedBy = "parent")
     private List<Category> child = new ArrayList<>();
 
     //==연관관계 편의 메소드==//
     public void addChildCategory(Category child) {
+        if (path != null && child.getPath() != null && path.startsWith(child.getPath())) {
+            throw new IllegalArgumentException("하위 카테고리 밑으로 옮길 수 없습니다.");
+        }
+        if (child.getParent() != null) {
+            child.getParent().getChild().remove(child);
+        }
         this.child.add(child);
         child.setParent(this);
+        child.updatePath();
+    }
+
+    public void addItem(Item item) {
+        this.items.add(item);
+        item.getCategories().add(this);
+    }
+
+    //==비즈니스 로직==//
+    /**
+     * 부모 경로에 자신의 id 를 붙여서 path 를 다시 만든다.
+     * └─> 다른 부모 밑으로 옮긴 경우에는 하위 카테고리의 path 도 같이 바꾼다.
+     *     id 가 아직 없으면 (저장 전) 아무것도 하지 않는다.
+     */
+    public void updatePath() {
+        if (id == null) {
+            return;
+        }
+        if (parent == null) {
+            this.path = "/" + id + "/";
+            this.depth = 0;
+        } else {
+            if (parent.getPath() == null) {
+                throw new IllegalStateException("부모 카테고리를 먼저 저장해야 합니다.");
+            }
+            this.path = parent.getPath() + id + "/";
+            this.depth = parent.getDepth() + 1;
+        }
+        for (Category c : child) {
+            c.updatePath();
+        }
     }
 
 }
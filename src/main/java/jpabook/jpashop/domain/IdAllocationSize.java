@@ -0,0 +1,25 @@
+package jpabook.jpashop.domain;
+
+/**
+ * 엔티티별 sequence 한 번에 미리 할당받는 id 개수
+ * <p>
+ * '@GeneratedValue' 만 쓰면 H2 에서는 모든 엔티티가 hibernate_sequence 하나를 같이 쓰고
+ * insert 할 때마다 sequence 를 한 번씩 호출한다.
+ * 엔티티마다 sequence 를 따로 두고 allocationSize 만큼 id 를 한번에 받아두면
+ * 그 개수만큼 insert 하는 동안 sequence 를 다시 호출하지 않는다. (pooled-lo optimizer)
+ * <p>
+ * 여기 값은 기본값이고, 설정 파일에 sequence 이름별로 값을 주면 그 값을 사용한다. (PooledSequenceGenerator)
+ * 값을 바꾸면 sequence 의 increment 도 같이 바뀌어야 한다. (ddl-auto 가 아니라면 DDL 도 함께 수정)
+ */
+public final class IdAllocationSize {
+    
+    public static final int MEMBER = 50;
+    public static final int ITEM = 50;
+    public static final int CATEGORY = 20;
+    public static final int ORDER = 100;
+    public static final int ORDER_ITEM = 100;
+    public static final int DELIVERY = 100;
+    
+    private IdAllocationSize() {
+    }
+}
@@ -0,0 +1,77 @@
+package jpabook.jpashop.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Idempotency-Key 로 처리 중이거나 처리한 요청과 그 응답
+ * <p>
+ * 요청을 처리하기 전에 '처리 중' 으로 먼저 저장한다. 키가 기본키이므로 같은 키로 동시에 들어온 요청은
+ * 다른 인스턴스에서 들어왔더라도 하나만 저장에 성공해서 처리한다. (IdempotencyService)
+ * 처리가 끝나면 응답을 채우고, 같은 키로 다시 들어온 요청은 서비스를 호출하지 않고 저장해둔 응답을 그대로 돌려준다. (IdempotencyFilter)
+ */
+@Entity
+@Table(name = "idempotency_record", indexes = @Index(name = "idx_idempotency_record_created_at", columnList = "created_at"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class IdempotencyRecord {
+
+    @Id
+    @Column(name = "idempotency_key", length = 100)
+    private String key;
+
+    private String requestMethod;
+    private String requestUri;
+
+    @Column(length = 64)
+    private String requestHash;     //요청 파라미터 / 본문의 SHA-256
+
+    private boolean completed;      //false 면 처리 중
+
+    private int status;
+    private String contentType;
+    private String location;        //redirect 응답의 Location 헤더
+
+    @Lob
+    private byte[] body;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    //==생성 메소드==//
+    public static IdempotencyRecord createInProgress(String key, String requestMethod, String requestUri, String requestHash) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.key = key;
+        record.requestMethod = requestMethod;
+        record.requestUri = requestUri;
+        record.requestHash = requestHash;
+        record.createdAt = LocalDateTime.now();
+        return record;
+    }
+
+    //==비즈니스 로직==//
+    /**
+     * 처리가 끝난 응답 저장
+     */
+    public void complete(int status, String contentType, String location, byte[] body) {
+        this.completed = true;
+        this.status = status;
+        this.contentType = contentType;
+        this.location = location;
+        this.body = body;
+    }
+
+    //==조회 로직==//
+    /**
+     * 같은 키로 들어온 요청이 처음 요청과 같은 요청인지 (본문까지 같아야 한다)
+     */
+    public boolean isSameRequest(String requestMethod, String requestUri, String requestHash) {
+        return this.requestMethod.equals(requestMethod)
+                && this.requestUri.equals(requestUri)
+                && this.requestHash.equals(requestHash);
+    }
+}
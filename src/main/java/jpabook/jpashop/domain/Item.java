@@ -3,19 +3,34 @@ package jpabook.jpashop.domain;
 import jpabook.jpashop.exception.NotEnoughStockException;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
+/*
+ * 2차 캐시
+ * └─> 상품은 주문, 목록 화면마다 읽지만 거의 바뀌지 않는다.
+ *     하위 타입 (Book, Album, Movie) 도 Item region 에 같이 저장된다.
+ *     재고를 SQL 로 직접 바꾸는 곳 (ItemRepository, StockLedger) 은 해당 상품을 캐시에서 직접 지운다.
+ */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "dtype")
 @Getter @Setter
 public abstract class Item {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "item_seq_generator")
+    @GenericGenerator(name = "item_seq_generator", strategy = PooledSequenceGenerator.STRATEGY, parameters = {
+            @Parameter(name = "sequence_name", value = "item_seq"),
+            @Parameter(name = "increment_size", value = "" + IdAllocationSize.ITEM)})
     @Column(name = "item_id")
     private Long id;
 
@@ -25,6 +40,14 @@ public abstract class Item {
 
     private int stockQuantity;
 
+    /*
+     * 낙관적 락
+     * └─> 동시에 같은 상품의 재고를 바꾸면 나중에 커밋하는 쪽이 OptimisticLockException 으로 실패한다.
+     *     (재시도는 OrderRetryTemplate)
+     */
+    @Version
+    private Long version;
+
     @ManyToMany(mappedBy = "items")
     private List<Category> categories = new ArrayList<>();
 
@@ -3,6 +3,9 @@ package jpabook.jpashop.domain;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.OptimisticLock;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotEmpty;
@@ -10,10 +13,15 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_member_name", columnNames = "name"))
 @Getter @Setter
 public class Member {
 
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
+    @GenericGenerator(name = "member_seq_generator", strategy = PooledSequenceGenerator.STRATEGY, parameters = {
+            @Parameter(name = "sequence_name", value = "member_seq"),
+            @Parameter(name = "increment_size", value = "" + IdAllocationSize.MEMBER)})
     @Column(name = "member_id")
     private Long id;
 
@@ -23,7 +31,15 @@ public class Member {
     @Embedded
     private Address address;
 
+    @JsonIgnore
+    @Version
+    private Long version;
+
+    /*
+     * 주문이 추가될 때마다 회원의 version 이 올라가면 같은 회원의 주문끼리 충돌하므로 낙관적 락 대상에서 제외
+     */
     @JsonIgnore     // 양방향 연관관계가 있을 때 한쪽은 JsonIgnore 해야 순환참조, 무한루프에 빠지지 않는다.
+    @OptimisticLock(excluded = true)
     @OneToMany(mappedBy = "member")
     private List<Order> orders = new ArrayList<>();
 }
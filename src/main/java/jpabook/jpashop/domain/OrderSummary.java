@@ -0,0 +1,61 @@
+package jpabook.jpashop.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 주문 목록 조회용 read model
+ * <p>
+ * orders, member, delivery, order_item, item 을 매번 join 하지 않도록
+ * 주문 한 건당 한 row 로 필요한 값을 미리 풀어서 저장해둔다.
+ * OrderService 의 주문 / 취소, MemberService 의 회원 수정과 같은 트랜잭션에서 함께 갱신된다.
+ */
+@Entity
+@Table(name = "order_summary", indexes = @Index(name = "idx_order_summary_member_id", columnList = "member_id"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OrderSummary {
+
+    @Id
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "member_id")
+    private Long memberId;
+
+    private String memberName;
+
+    @Embedded
+    private Address address;        //배송지 주소
+
+    private LocalDateTime orderDate;
+
+    @Enumerated(EnumType.STRING)
+    private OrderStatus status;     //주문 상태 [ORDER, CANCEL]
+
+    private int itemCount;          //주문상품 종류 수
+    private int totalPrice;         //전체 주문 가격
+
+    //==생성 메소드==//
+    public static OrderSummary createOrderSummary(Order order) {
+        OrderSummary summary = new OrderSummary();
+        summary.orderId = order.getId();
+        summary.memberId = order.getMember().getId();
+        summary.memberName = order.getMember().getName();
+        summary.address = order.getDelivery().getAddress();
+        summary.orderDate = order.getOrderDate();
+        summary.status = order.getStatus();
+        summary.itemCount = order.getOrderItems().size();
+        summary.totalPrice = order.getTotalPrice();
+        return summary;
+    }
+
+    //==비즈니스 로직==//
+    public void cancel() {
+        this.status = OrderStatus.CANCEL;
+    }
+}
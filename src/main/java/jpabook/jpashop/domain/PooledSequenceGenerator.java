@@ -0,0 +1,37 @@
+package jpabook.jpashop.domain;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * sequence 에서 한 번에 받아두는 id 개수를 설정 파일에서 바꿀 수 있는 sequence generator
+ * <p>
+ * '@SequenceGenerator' 의 allocationSize 는 애노테이션 속성이라 컴파일할 때 정해진다.
+ * 엔티티에는 기본값 (IdAllocationSize) 만 두고, 설정에 sequence 이름별로 값이 있으면 그 값을 사용한다.
+ * <pre>
+ * spring.jpa.properties.jpashop.id.increment_size.orders_seq: 100
+ * </pre>
+ * └─> ddl-auto 가 아니라면 DB 의 sequence increment 도 같은 값으로 바꿔야 한다.
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String STRATEGY = "jpabook.jpashop.domain.PooledSequenceGenerator";
+    public static final String INCREMENT_SIZE_PREFIX = "jpashop.id.increment_size.";
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        String sequenceName = params.getProperty(SEQUENCE_PARAM);
+        Object incrementSize = serviceRegistry.getService(ConfigurationService.class)
+                .getSettings()
+                .get(INCREMENT_SIZE_PREFIX + sequenceName);
+        if (incrementSize != null) {
+            params.setProperty(INCREMENT_PARAM, incrementSize.toString().trim());
+        }
+        super.configure(type, params, serviceRegistry);
+    }
+}
@@ -0,0 +1,13 @@
+package jpabook.jpashop.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 카테고리가 추가되거나 옮겨졌을 때 CategoryService 가 발행하는 이벤트
+ */
+@Getter
+@AllArgsConstructor
+public class CategoryChangedEvent {
+    private Long categoryId;
+}
@@ -0,0 +1,16 @@
+package jpabook.jpashop.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 상품이 등록되거나 수정되었을 때 ItemService 가 발행하는 이벤트
+ */
+@Getter
+@AllArgsConstructor
+public class ItemChangedEvent {
+    private Long itemId;
+    private String name;
+    private int stockQuantity;
+    private boolean newItem;    //등록이면 true, 수정이면 false
+}
@@ -0,0 +1,15 @@
+package jpabook.jpashop.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 회원이 가입하거나 수정되었을 때 MemberService 가 발행하는 이벤트
+ */
+@Getter
+@AllArgsConstructor
+public class MemberChangedEvent {
+    private Long memberId;
+    private String name;
+    private boolean newMember;  //가입이면 true, 수정이면 false
+}
@@ -0,0 +1,20 @@
+package jpabook.jpashop.event;
+
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 주문이 생성되거나 취소되었을 때 OrderService 가 발행하는 이벤트
+ * └─> 캐시처럼 DB 밖에 있는 값을 맞추는 쪽은 @TransactionalEventListener 로 커밋 이후에 받는다.
+ */
+@Getter
+@AllArgsConstructor
+public class OrderChangedEvent {
+    private Long orderId;
+    private OrderStatus status;         //변경된 이후의 주문 상태 (주문이면 ORDER, 취소면 CANCEL)
+    private LocalDateTime orderDate;
+    private int totalPrice;
+}
@@ -0,0 +1,18 @@
+package jpabook.jpashop.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 일괄 취소 대상 주문이 한번에 취소할 수 있는 건수보다 많을 때 (OrderService.cancelOrders)
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class BulkCancelLimitExceededException extends RuntimeException {
+    public BulkCancelLimitExceededException() {
+        super();
+    }
+
+    public BulkCancelLimitExceededException(String message) {
+        super(message);
+    }
+}
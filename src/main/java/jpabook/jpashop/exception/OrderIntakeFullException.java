@@ -0,0 +1,18 @@
+package jpabook.jpashop.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 주문 접수 큐가 가득 차서 더 이상 받을 수 없을 때 (OrderIntakeService)
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class OrderIntakeFullException extends RuntimeException {
+    public OrderIntakeFullException() {
+        super();
+    }
+
+    public OrderIntakeFullException(String message) {
+        super(message);
+    }
+}
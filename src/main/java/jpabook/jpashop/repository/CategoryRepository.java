@@ -0,0 +1,55 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.Category;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class CategoryRepository {
+    
+    private final EntityManager em;
+    
+    /*
+     * persist 하면 sequence 로 id 가 정해지므로 바로 path 를 채운다.
+     * └─> 부모 카테고리가 먼저 저장되어 있어야 한다.
+     */
+    public void save(Category category) {
+        em.persist(category);
+        category.updatePath();
+    }
+    
+    public Category findOne(Long id) {
+        return em.find(Category.class, id);
+    }
+    
+    /*
+     * 자신을 포함한 모든 하위 카테고리와 그 상품을 쿼리 한번으로 조회
+     * └─> 'path like 접두어%' 는 'idx_category_path' 인덱스를 사용한다.
+     *     xToMany 인 items 를 fetch join 하므로 distinct 를 사용한다.
+     */
+    public List<Category> findDescendantsWithItems(Category category) {
+        return em.createQuery(
+                "select distinct c from Category c" +
+                        " left join fetch c.items i" +
+                        " where c.path like :prefix" +
+                        " order by c.path", Category.class)
+                .setParameter("prefix", category.getPath() + "%")
+                .getResultList();
+    }
+    
+    /*
+     * 전체 카테고리 트리 스냅샷용 [id, name, parent_id, depth]
+     * └─> path 순서로 정렬하면 부모가 항상 자식보다 먼저 나온다.
+     */
+    public List<Object[]> findAllForTree() {
+        return em.createQuery(
+                "select c.id, c.name, p.id, c.depth from Category c" +
+                        " left join c.parent p" +
+                        " order by c.path", Object[].class)
+                .getResultList();
+    }
+}
@@ -0,0 +1,72 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.event.CategoryChangedEvent;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 화면 내비게이션용 카테고리 트리 스냅샷
+ * <p>
+ * 카테고리는 거의 바뀌지 않으므로 전체 트리를 쿼리 한번으로 읽어서 불변 객체로 만들어두고
+ * 조회할 때는 DB 나 lazy 로딩 없이 스냅샷을 그대로 돌려준다.
+ * 카테고리가 추가되거나 옮겨지면 커밋된 뒤에 새 스냅샷으로 통째로 바꾼다.
+ */
+@Component
+@RequiredArgsConstructor
+public class CategoryTree {
+    
+    private final CategoryRepository categoryRepository;
+    
+    private volatile List<Node> roots = Collections.emptyList();
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        Map<Long, List<Node>> children = new HashMap<>();
+        List<Object[]> rows = categoryRepository.findAllForTree();
+        
+        //path 순서의 역순으로 만들면 자식 노드가 부모 노드보다 먼저 완성된다.
+        List<Node> newRoots = new ArrayList<>();
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            Object[] row = rows.get(i);
+            Long id = (Long) row[0];
+            Long parentId = (Long) row[2];
+            List<Node> myChildren = children.getOrDefault(id, Collections.emptyList());
+            Collections.reverse(myChildren);
+            Node node = new Node(id, (String) row[1], (Integer) row[3], Collections.unmodifiableList(myChildren));
+            
+            List<Node> siblings = parentId == null ? newRoots : children.computeIfAbsent(parentId, k -> new ArrayList<>());
+            siblings.add(node);
+        }
+        Collections.reverse(newRoots);
+        roots = Collections.unmodifiableList(newRoots);
+    }
+    
+    @TransactionalEventListener
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        rebuild();
+    }
+    
+    public List<Node> getRoots() {
+        return roots;
+    }
+    
+    @Getter
+    @AllArgsConstructor
+    public static class Node {
+        private final Long id;
+        private final String name;
+        private final int depth;
+        private final List<Node> children;
+    }
+}
@@ -0,0 +1,65 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.IdempotencyRecord;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+
+@Repository
+@RequiredArgsConstructor
+public class IdempotencyRecordRepository {
+    
+    private final EntityManager em;
+    
+    /*
+     * 바로 insert 해서 같은 키가 이미 있으면 여기서 DataIntegrityViolationException 이 나도록 한다.
+     */
+    public void insert(IdempotencyRecord record) {
+        em.persist(record);
+        em.flush();
+    }
+    
+    public IdempotencyRecord findOne(String key) {
+        return em.find(IdempotencyRecord.class, key);
+    }
+    
+    /*
+     * cutoff 보다 먼저 만들어진 기록 (만료된 응답, 처리하다 멈춘 요청) 을 새 요청의 '처리 중' 기록으로 바꾼다.
+     * └─> 조건부 update 라서 여러 요청이 동시에 가져가려고 해도 한 요청만 1 을 받는다.
+     */
+    public int takeOver(IdempotencyRecord record, LocalDateTime cutoff) {
+        return em.createQuery(
+                "update IdempotencyRecord r" +
+                        " set r.requestMethod = :requestMethod, r.requestUri = :requestUri, r.requestHash = :requestHash," +
+                        " r.completed = false, r.status = 0, r.contentType = null, r.location = null, r.body = null," +
+                        " r.createdAt = :createdAt" +
+                        " where r.key = :key and r.createdAt < :cutoff")
+                .setParameter("requestMethod", record.getRequestMethod())
+                .setParameter("requestUri", record.getRequestUri())
+                .setParameter("requestHash", record.getRequestHash())
+                .setParameter("createdAt", record.getCreatedAt())
+                .setParameter("key", record.getKey())
+                .setParameter("cutoff", cutoff)
+                .executeUpdate();
+    }
+    
+    /*
+     * 처리에 실패한 요청의 '처리 중' 기록 삭제 (처리가 끝난 기록은 지우지 않는다)
+     */
+    public int deleteInProgress(String key) {
+        return em.createQuery("delete from IdempotencyRecord r where r.key = :key and r.completed = false")
+                .setParameter("key", key)
+                .executeUpdate();
+    }
+    
+    /*
+     * 만료된 기록을 한번에 삭제 ('idx_idempotency_record_created_at' 인덱스 사용)
+     */
+    public int deleteCreatedBefore(LocalDateTime cutoff) {
+        return em.createQuery("delete from IdempotencyRecord r where r.createdAt < :cutoff")
+                .setParameter("cutoff", cutoff)
+                .executeUpdate();
+    }
+}
@@ -1,11 +1,23 @@
 package jpabook.jpashop.repository;
 
 import jpabook.jpashop.domain.Item;
+import jpabook.jpashop.exception.NotEnoughStockException;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.hibernate.annotations.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 @Repository
 @RequiredArgsConstructor
@@ -34,8 +46,105 @@ public class ItemRepository {
         return em.find(Item.class, id);
     }
 
+    public List<Item> findAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return em.createQuery("select i from Item i where i.id in :ids", Item.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    /*
+     * 상품 목록은 쿼리 캐시에 올린다. ('query.item-catalog' region)
+     * └─> item 테이블이 바뀌면 Hibernate 가 결과를 무효화하고, 상품 값 자체는 Item region 에서 읽는다.
+     */
     public List<Item> findAll() {
         return em.createQuery("select i from Item i", Item.class)
+                .setHint(QueryHints.CACHEABLE, true)
+                .setHint(QueryHints.CACHE_REGION, "query.item-catalog")
                 .getResultList();
     }
+    
+    /*
+     * 재고 차감
+     * └─> 엔티티를 읽어서 removeStock 으로 고치고 변경 감지로 update 하면
+     *     select 와 모든 컬럼 update 사이에 다른 트랜잭션이 끼어들어 재고가 덮어써질 수 있다.
+     *     'stock_quantity >= ?' 조건을 건 update 한번으로 확인과 차감을 같이 처리하고
+     *     변경된 row 가 없으면 재고가 부족한 것으로 본다.
+     *
+     * bulk 연산은 영속성 컨텍스트를 거치지 않으므로 이미 조회한 Item 엔티티의 stockQuantity, version 은 바뀌지 않는다.
+     * (같은 트랜잭션에서 그 엔티티의 재고를 다시 고치면 안된다.)
+     *
+     * JPQL bulk update 는 Item 2차 캐시 region 전체를 비우므로 JDBC 로 실행하고 바꾼 상품만 캐시에서 지운다.
+     */
+    public void decreaseStock(Long itemId, int count) {
+        decreaseStocks(Collections.singletonMap(itemId, count));
+    }
+    
+    /*
+     * 여러 상품의 재고 차감
+     * └─> 상품별 수량을 JDBC batch 로 한번에 보낸다.
+     *     item_id 오름차순으로 실행해서 여러 주문이 같은 상품들을 동시에 잡아도 deadlock 이 나지 않도록 한다.
+     */
+    public void decreaseStocks(Map<Long, Integer> countsByItemId) {
+        int[] updated = executeStockBatch(
+                "update item set stock_quantity = stock_quantity - ?, version = version + 1" +
+                        " where item_id = ? and stock_quantity >= ?",
+                countsByItemId, true);
+        for (int count : updated) {
+            if (count == 0) {
+                throw new NotEnoughStockException("need more stock");
+            }
+        }
+    }
+    
+    /*
+     * 재고 증가 (주문 취소)
+     */
+    public void increaseStocks(Map<Long, Integer> countsByItemId) {
+        executeStockBatch(
+                "update item set stock_quantity = stock_quantity + ?, version = version + 1" +
+                        " where item_id = ?",
+                countsByItemId, false);
+    }
+    
+    private int[] executeStockBatch(String sql, Map<Long, Integer> countsByItemId, boolean checkStock) {
+        if (countsByItemId.isEmpty()) {
+            return new int[0];
+        }
+        em.flush();     //JDBC 를 직접 사용하므로 쓰기 지연 SQL 을 먼저 내보낸다.
+        evictFromCache(countsByItemId.keySet());
+        return em.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (Map.Entry<Long, Integer> entry : new TreeMap<>(countsByItemId).entrySet()) {
+                    ps.setInt(1, entry.getValue());
+                    ps.setLong(2, entry.getKey());
+                    if (checkStock) {
+                        ps.setInt(3, entry.getValue());
+                    }
+                    ps.addBatch();
+                }
+                return ps.executeBatch();
+            }
+        });
+    }
+    
+    /*
+     * SQL 로 바꾼 상품을 2차 캐시에서 지운다.
+     * └─> 커밋 전에 다른 트랜잭션이 예전 값을 다시 캐시에 올릴 수 있으므로 트랜잭션이 끝난 뒤에 한번 더 지운다.
+     */
+    public void evictFromCache(Collection<Long> itemIds) {
+        Cache cache = em.getEntityManagerFactory().getCache();
+        List<Long> ids = new ArrayList<>(itemIds);
+        ids.forEach(id -> cache.evict(Item.class, id));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    ids.forEach(id -> cache.evict(Item.class, id));
+                }
+            });
+        }
+    }
 }
@@ -0,0 +1,106 @@
+package jpabook.jpashop.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 회원 이름 중복 검사용 Bloom filter
+ * <p>
+ * '없다' 고 답하면 그 이름의 회원은 확실히 없으므로 중복 확인 쿼리를 생략할 수 있다.
+ * '있을 수도 있다' 고 답하면 (실제로 있거나 false positive) DB 에서 확인한다.
+ * <p>
+ * 애플리케이션이 뜰 때 전체 회원 이름으로 만들고, 이후에는 MemberService 가 가입 / 수정할 때 바로 추가한다.
+ * └─> 이름을 지울 수는 없으므로 바뀌기 전 이름은 false positive 로 남는다. (쿼리 한번이 더 나갈 뿐)
+ *     최종 중복 검사는 member.name 의 unique 제약조건이 한다.
+ */
+@Component
+public class MemberNameFilter {
+    
+    private final EntityManager em;
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashCount;
+    private volatile boolean ready;
+    
+    public MemberNameFilter(EntityManager em,
+                            @Value("${jpashop.member-name-filter.expected-insertions:1000000}") long expectedInsertions,
+                            @Value("${jpashop.member-name-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.em = em;
+        long size = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (size + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitSize = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<String> names = em.createQuery("select m.name from Member m", String.class)
+                .getResultList();
+        for (String name : names) {
+            put(name);
+        }
+        ready = true;
+    }
+    
+    public void put(String name) {
+        long[] hashes = hashes(name);
+        for (int i = 0; i < hashCount; i++) {
+            long index = index(hashes, i);
+            long mask = 1L << (index & 63);
+            int word = (int) (index >>> 6);
+            if ((bits.get(word) & mask) == 0) {
+                bits.accumulateAndGet(word, mask, (current, m) -> current | m);
+            }
+        }
+    }
+    
+    /**
+     * false 면 그 이름의 회원은 확실히 없다.
+     * └─> 필터가 만들어지기 전에는 항상 true
+     */
+    public boolean mightContain(String name) {
+        if (!ready) {
+            return true;
+        }
+        long[] hashes = hashes(name);
+        for (int i = 0; i < hashCount; i++) {
+            long index = index(hashes, i);
+            if ((bits.get((int) (index >>> 6)) & (1L << (index & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /*
+     * 해시 두 개로 k 개의 위치를 만든다. (h1 + i * h2)
+     */
+    private long index(long[] hashes, int i) {
+        return Math.floorMod(hashes[0] + i * hashes[1], bitSize);
+    }
+    
+    private static long[] hashes(String name) {
+        //FNV-1a 64 bit
+        long h1 = 0xcbf29ce484222325L;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            h1 ^= (b & 0xff);
+            h1 *= 0x100000001b3L;
+        }
+        //두 번째 해시는 첫 번째 해시를 섞어서 만든다. (murmur3 fmix64)
+        long h2 = h1;
+        h2 ^= h2 >>> 33;
+        h2 *= 0xff51afd7ed558ccdL;
+        h2 ^= h2 >>> 33;
+        h2 *= 0xc4ceb9fe1a85ec53L;
+        h2 ^= h2 >>> 33;
+        return new long[]{h1, h2 | 1};
+    }
+}
@@ -0,0 +1,136 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.event.MemberChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 회원 이름 부분 검색용 메모리 인덱스 (trigram inverted index)
+ * <p>
+ * 'name like %검색어%' 는 앞에 % 가 붙어서 DB 인덱스를 사용할 수 없다.
+ * 이름을 3글자씩 잘라서 (trigram) 각 조각이 들어있는 회원 id 목록을 들고 있다가
+ * 검색어의 trigram 중 가장 회원 수가 적은 목록만 확인해서 회원 id 를 찾는다.
+ * <p>
+ * 애플리케이션이 뜰 때 전체 회원으로 만들고, 이후에는 MemberService 의 가입 / 수정이 커밋된 뒤에 갱신한다.
+ */
+@Component
+@RequiredArgsConstructor
+public class MemberNameIndex {
+    
+    private static final int GRAM_SIZE = 3;
+    
+    private final EntityManager em;
+    
+    private final Map<Long, String> names = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+    
+    /*
+     * 조회하는 동안 커밋된 이름 변경이 이벤트로 먼저 들어와 있을 수 있으므로
+     * 인덱스에 아직 없는 회원만 넣는다. (조회 결과가 더 오래된 이름일 수 있다)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<Object[]> rows = em.createQuery("select m.id, m.name from Member m", Object[].class)
+                .getResultList();
+        for (Object[] row : rows) {
+            putIfAbsent((Long) row[0], (String) row[1]);
+        }
+        ready = true;
+    }
+    
+    @TransactionalEventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        put(event.getMemberId(), event.getName());
+    }
+    
+    /**
+     * 인덱스가 만들어지기 전에는 DB 의 like 검색을 사용해야 한다.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+    
+    /**
+     * 이름에 keyword 가 포함된 회원 id 조회
+     */
+    public Set<Long> findIdsByNameContaining(String keyword) {
+        if (keyword.length() < GRAM_SIZE) {
+            //trigram 을 만들 수 없는 짧은 검색어는 이름을 전부 확인한다.
+            Set<Long> result = new HashSet<>();
+            names.forEach((id, name) -> {
+                if (name.contains(keyword)) {
+                    result.add(id);
+                }
+            });
+            return result;
+        }
+        
+        Set<Long> candidates = null;
+        for (String gram : grams(keyword)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null) {
+                return Collections.emptySet();
+            }
+            if (candidates == null || ids.size() < candidates.size()) {
+                candidates = ids;
+            }
+        }
+        
+        //trigram 이 모두 들어있어도 순서가 다를 수 있으므로 실제 이름으로 한번 더 확인한다.
+        Set<Long> result = new HashSet<>();
+        for (Long id : candidates) {
+            String name = names.get(id);
+            if (name != null && name.contains(keyword)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+    
+    private synchronized void putIfAbsent(Long memberId, String name) {
+        if (!names.containsKey(memberId)) {
+            put(memberId, name);
+        }
+    }
+    
+    private synchronized void put(Long memberId, String name) {
+        String oldName = names.get(memberId);
+        if (oldName != null) {
+            for (String gram : grams(oldName)) {
+                Set<Long> ids = postings.get(gram);
+                if (ids != null) {
+                    ids.remove(memberId);
+                }
+            }
+        }
+        
+        if (name == null) {
+            names.remove(memberId);
+            return;
+        }
+        names.put(memberId, name);
+        for (String gram : grams(name)) {
+            postings.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(memberId);
+        }
+    }
+    
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_SIZE <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM_SIZE));
+        }
+        return grams;
+    }
+}
@@ -2,7 +2,10 @@ package jpabook.jpashop.repository;
 
 import jpabook.jpashop.domain.Member;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface MemberRepository extends JpaRepository<Member, Long> {
@@ -16,4 +19,15 @@ public interface MemberRepository extends JpaRepository<Member, Long> {
      * 즉, 구현체를 제공해주지 않아도 된다.
      */
     List<Member> findByName(String name);
+    
+    /*
+     * 목록을 만들지 않고 존재 여부만 확인한다.
+     */
+    boolean existsByName(String name);
+    
+    /*
+     * 주어진 이름 중 이미 가입된 이름만 조회 (회원 일괄 등록)
+     */
+    @Query("select m.name from Member m where m.name in :names")
+    List<String> findNamesByNameIn(@Param("names") Collection<String> names);
 }
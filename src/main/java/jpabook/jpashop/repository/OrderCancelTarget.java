@@ -0,0 +1,20 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 일괄 취소할 주문의 상태 (OrderRepository.findCancelTargetsForUpdate)
+ */
+@Getter
+@AllArgsConstructor
+public class OrderCancelTarget {
+    private Long orderId;
+    private OrderStatus status;
+    private DeliveryStatus deliveryStatus;
+    private LocalDateTime orderDate;
+}
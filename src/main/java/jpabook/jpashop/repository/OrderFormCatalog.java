@@ -0,0 +1,121 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.event.ItemChangedEvent;
+import jpabook.jpashop.event.MemberChangedEvent;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 주문 화면 (order/orderForm.html) 의 회원 / 상품 선택 목록
+ * <p>
+ * 선택 목록에는 id 와 이름만 필요한데 매번 전체 Member, Item 엔티티를 영속성 컨텍스트에 올리고 있었다.
+ * id, 이름 쌍만 메모리에 들고 있다가 화면은 DB 조회 없이 여기서 그린다.
+ * <p>
+ * 애플리케이션이 뜰 때 한 번 만들고, 이후에는 MemberService / ItemService 의 등록 / 수정이 커밋된 뒤에 한 건씩 반영한다.
+ * <p>
+ * 상품은 재고와 상관없이 전부 보여준다.
+ * └─> 재고는 주문 / 취소 / 일괄 취소 / StockLedger 등 여러 곳에서 바뀌고, StockLedger 를 켜면 DB 의 재고도 바로 맞지 않는다.
+ *     여기서 재고를 따라가지 않고, 재고가 없는 상품을 주문하면 NotEnoughStockException 으로 막는다.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderFormCatalog {
+    
+    private final EntityManager em;
+    
+    private final Map<Long, String> members = new ConcurrentSkipListMap<>();
+    private final Map<Long, String> items = new ConcurrentSkipListMap<>();
+    
+    /*
+     * 변경이 있을 때마다 목록을 새로 만들면 회원 일괄 등록 같은 경우 같은 작업을 수없이 반복한다.
+     * 변경은 map 에만 반영하고, 목록은 화면에서 처음 필요할 때 한 번만 만든다.
+     */
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private volatile boolean dirty;
+    
+    /*
+     * 조회하는 동안 커밋된 등록 / 수정이 이벤트로 먼저 들어와 있을 수 있으므로
+     * 목록에 아직 없는 id 만 넣는다. (조회 결과가 더 오래된 이름일 수 있다)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<Object[]> memberRows = em.createQuery("select m.id, m.name from Member m", Object[].class)
+                .getResultList();
+        for (Object[] row : memberRows) {
+            members.putIfAbsent((Long) row[0], (String) row[1]);
+        }
+    
+        List<Object[]> itemRows = em.createQuery("select i.id, i.name from Item i", Object[].class)
+                .getResultList();
+        for (Object[] row : itemRows) {
+            items.putIfAbsent((Long) row[0], (String) row[1]);
+        }
+        dirty = true;
+    }
+    
+    @TransactionalEventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        put(members, event.getMemberId(), event.getName());
+    }
+    
+    @TransactionalEventListener
+    public void onItemChanged(ItemChangedEvent event) {
+        put(items, event.getItemId(), event.getName());
+    }
+    
+    public Snapshot getSnapshot() {
+        if (dirty) {
+            synchronized (this) {
+                if (dirty) {
+                    //만드는 도중에 들어온 변경을 놓치지 않도록 먼저 내린다.
+                    dirty = false;
+                    snapshot = new Snapshot(options(members), options(items));
+                }
+            }
+        }
+        return snapshot;
+    }
+    
+    private void put(Map<Long, String> target, Long id, String name) {
+        target.put(id, name);
+        dirty = true;
+    }
+    
+    private static List<Option> options(Map<Long, String> source) {
+        List<Option> options = new ArrayList<>(source.size());
+        source.forEach((id, name) -> options.add(new Option(id, name)));
+        return Collections.unmodifiableList(options);
+    }
+    
+    @Getter
+    @AllArgsConstructor
+    public static class Snapshot {
+    
+        static final Snapshot EMPTY = new Snapshot(Collections.emptyList(), Collections.emptyList());
+    
+        private final List<Option> members;
+        private final List<Option> items;
+    }
+    
+    /**
+     * 선택 목록의 항목 하나 (화면에서는 id, name 만 사용한다)
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Option {
+        private final Long id;
+        private final String name;
+    }
+}
@@ -2,6 +2,7 @@ package jpabook.jpashop.repository;
 
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import jpabook.jpashop.domain.DeliveryStatus;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderStatus;
 import jpabook.jpashop.domain.QMember;
@@ -11,13 +12,21 @@ import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 
 import javax.persistence.EntityManager;
+import java.sql.Timestamp;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toList;
 
 @Repository
 @RequiredArgsConstructor
 public class OrderRepository {
 
+    private static final int MAX_MEMBER_IDS_IN_CLAUSE = 1000;
+
     private final EntityManager em;
+    private final MemberNameIndex memberNameIndex;
 
     public void save(Order order) {
         em.persist(order);
@@ -134,13 +143,85 @@ public class OrderRepository {
                 .join(order.member, member)
 //                .where(statusEq(orderSearch.getOrderStatus()))
 //                .where(order.status.eq(orderSearch.getOrderStatus()), member.name.like(orderSearch.getMemberName()))
-                .where(order.status.eq(orderSearch.getOrderStatus()), nameLike(orderSearch.getMemberName()))
+//                .where(order.status.eq(orderSearch.getOrderStatus()), nameLike(orderSearch.getMemberName()))
+                /*
+                 * order.status.eq(null) 은 'status = null' 조건이 되어 아무것도 조회되지 않는다.
+                 * null 을 반환하는 조건 메소드를 사용해야 where 절에서 빠진다.
+                 */
+                .where(searchCondition(orderSearch))
                 .limit(1000)
                 .fetch();
     }
     
+    /*
+     * 주문 검색
+     * └─> findAllByString 과 같은 조건으로 offset, limit 페이징
+     */
+    public List<Order> findAll(OrderSearch orderSearch, int offset, int limit) {
+        QOrder order = QOrder.order;
+        QMember member = QMember.member;
+        
+        return new JPAQueryFactory(em)
+                .select(order)
+                .from(order)
+                .join(order.member, member).fetchJoin()
+                .where(searchCondition(orderSearch))
+                .orderBy(order.id.desc())
+                .offset(offset)
+                .limit(limit)
+                .fetch();
+    }
+    
+    /*
+     * 주문 검색 건수
+     * └─> 조회와 같은 searchCondition 을 사용하므로 조건이 어긋나지 않는다.
+     */
+    public long count(OrderSearch orderSearch) {
+        QOrder order = QOrder.order;
+        QMember member = QMember.member;
+        
+        Long count = new JPAQueryFactory(em)
+                .select(order.count())
+                .from(order)
+                .join(order.member, member)
+                .where(searchCondition(orderSearch))
+                .fetchOne();
+        return count == null ? 0 : count;
+    }
+    
+    
+    /*
+     * 검색 조건에 맞는 주문 id (일괄 취소 대상)
+     */
+    public List<Long> findIds(OrderSearch orderSearch, int limit) {
+        QOrder order = QOrder.order;
+        QMember member = QMember.member;
+        
+        return new JPAQueryFactory(em)
+                .select(order.id)
+                .from(order)
+                .join(order.member, member)
+                .where(searchCondition(orderSearch))
+                .orderBy(order.id.asc())
+                .limit(limit)
+                .fetch();
+    }
+    
     
     // querydsl 조건절을 위한 메소드
+    /*
+     * null 인 조건은 where 절에서 무시된다.
+     * status, order_date 는 'idx_orders_status_order_date' 인덱스를, 회원 이름은 MemberNameIndex 를 사용한다.
+     */
+    private BooleanExpression[] searchCondition(OrderSearch orderSearch) {
+        return new BooleanExpression[] {
+                statusEq(orderSearch.getOrderStatus()),
+                nameLike(orderSearch.getMemberName()),
+                orderDateGoe(orderSearch.getOrderDateFrom()),
+                orderDateLoe(orderSearch.getOrderDateTo())
+        };
+    }
+    
     private BooleanExpression statusEq(OrderStatus statusCond) {
         if (statusCond == null) {
             return null;
@@ -148,11 +229,43 @@ public class OrderRepository {
         return QOrder.order.status.eq(statusCond);
     }
     
+    /*
+     * 회원 이름 부분 일치 검색
+     * └─> 'name like %검색어%' 는 인덱스를 사용할 수 없으므로
+     *     MemberNameIndex 로 회원 id 를 먼저 찾고 'member_id in (...)' 으로 검색한다.
+     *     인덱스가 아직 준비되지 않았거나 찾은 회원이 너무 많으면 like 검색을 사용한다.
+     */
     private BooleanExpression nameLike(String memberName) {
-        if (StringUtils.hasText(memberName)) {
+        if (!StringUtils.hasText(memberName)) {
             return null;
         }
-        return QMember.member.name.like(memberName);
+        if (memberNameIndex.isReady()) {
+            Set<Long> memberIds = memberNameIndex.findIdsByNameContaining(memberName);
+            if (memberIds.isEmpty()) {
+                return QOrder.order.member.id.isNull();    //일치하는 회원이 없으면 아무것도 조회되지 않도록
+            }
+            if (memberIds.size() <= MAX_MEMBER_IDS_IN_CLAUSE) {
+                return QOrder.order.member.id.in(memberIds);
+            }
+        }
+        return QMember.member.name.contains(memberName);
+    }
+    
+    private BooleanExpression orderDateGoe(LocalDate from) {
+        if (from == null) {
+            return null;
+        }
+        return QOrder.order.orderDate.goe(from.atStartOfDay());
+    }
+    
+    /*
+     * 끝 날짜는 그 날 하루 전체를 포함하도록 다음 날 0시 미만으로 검색
+     */
+    private BooleanExpression orderDateLoe(LocalDate to) {
+        if (to == null) {
+            return null;
+        }
+        return QOrder.order.orderDate.lt(to.plusDays(1).atStartOfDay());
     }
     
     
@@ -200,4 +313,77 @@ public class OrderRepository {
                 .setMaxResults(limit)
                 .getResultList();
     }
+
+    /*
+     * offset 방식은 offset 앞에 있는 row 를 모두 읽고 버리기 때문에 뒤 페이지로 갈수록 느려진다.
+     * keyset(seek) 방식은 이전 페이지의 마지막 order_id 다음부터 PK 인덱스를 타고 바로 찾아가므로
+     * 몇 번째 페이지인지와 상관없이 일정한 비용으로 조회한다.
+     *
+     * xToMany 인 orderItems 는 여기서도 fetch join 하지 않고 'default_batch_fetch_size' 로 가져온다.
+     */
+    public List<Order> findAllWithMemberDeliveryAfter(Long lastOrderId, int limit) {
+        return em.createQuery(
+                "select o from Order o" +
+                        " join fetch o.member m" +
+                        " join fetch o.delivery d" +
+                        " where o.id > :lastOrderId" +
+                        " order by o.id", Order.class
+                )
+                .setParameter("lastOrderId", lastOrderId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+    
+    /*
+     * 일괄 취소할 주문을 'select ... for update' 로 잠그고 주문, 배송 상태를 읽는다.
+     * └─> 잠근 뒤에 상태를 확인하므로 동시에 같은 주문을 취소해도 재고가 두 번 돌아오지 않는다.
+     */
+    public List<OrderCancelTarget> findCancelTargetsForUpdate(List<Long> orderIds) {
+        List<?> rows = em.createNativeQuery(
+                "select o.order_id, o.status, d.status as delivery_status, o.order_date" +
+                        " from orders o" +
+                        " join delivery d on d.delivery_id = o.delivery_id" +
+                        " where o.order_id in (:orderIds)" +
+                        " order by o.order_id" +
+                        " for update")
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+        return rows.stream()
+                .map(r -> (Object[]) r)
+                .map(r -> new OrderCancelTarget(
+                        ((Number) r[0]).longValue(),
+                        OrderStatus.valueOf((String) r[1]),
+                        r[2] == null ? null : DeliveryStatus.valueOf((String) r[2]),
+                        r[3] == null ? null : ((Timestamp) r[3]).toLocalDateTime()))
+                .collect(toList());
+    }
+    
+    /*
+     * 주문 상태를 한번에 CANCEL 로 변경
+     * └─> bulk 연산은 영속성 컨텍스트를 거치지 않으므로 먼저 flush 한다. (auto flush 는 update 대상 테이블 변경만 내보낸다)
+     *     이미 읽어둔 주문 엔티티는 예전 상태이므로, 트랜잭션을 가진 쪽에서 끝나고 영속성 컨텍스트를 비워야 한다.
+     */
+    public int cancelAll(List<Long> orderIds) {
+        em.flush();
+        return em.createQuery(
+                "update Order o set o.status = :status, o.version = o.version + 1" +
+                        " where o.id in :orderIds")
+                .setParameter("status", OrderStatus.CANCEL)
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+    }
+    
+    /*
+     * 주문별, 상품별 주문 수량과 금액 합계
+     * └─> [order_id, item_id, 수량 합계, 금액 합계]
+     */
+    public List<Object[]> sumOrderItems(List<Long> orderIds) {
+        return em.createQuery(
+                "select oi.order.id, oi.item.id, sum(oi.count), sum(oi.orderPrice * oi.count)" +
+                        " from OrderItem oi" +
+                        " where oi.order.id in :orderIds" +
+                        " group by oi.order.id, oi.item.id", Object[].class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+    }
 }
@@ -3,6 +3,9 @@ package jpabook.jpashop.repository;
 import jpabook.jpashop.domain.OrderStatus;
 import lombok.Getter;
 import lombok.Setter;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
 
 @Getter @Setter
 public class OrderSearch {
@@ -10,4 +13,10 @@ public class OrderSearch {
     private String memberName;          //회원 이름
     private OrderStatus orderStatus;    //주문 상태[ORDER, CANCEL]
     
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate orderDateFrom;    //주문일 검색 시작 (포함)
+    
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate orderDateTo;      //주문일 검색 끝 (포함)
+    
 }
@@ -0,0 +1,54 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.OrderSummary;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class OrderSummaryRepository {
+    
+    private final EntityManager em;
+    
+    public void save(OrderSummary orderSummary) {
+        em.persist(orderSummary);
+    }
+    
+    public OrderSummary findOne(Long orderId) {
+        return em.find(OrderSummary.class, orderId);
+    }
+    
+    /*
+     * join 없이 order_summary 한 테이블을 PK 순서대로 읽는다.
+     */
+    public List<OrderSummary> findAll(int offset, int limit) {
+        return em.createQuery("select s from OrderSummary s order by s.orderId", OrderSummary.class)
+                .setFirstResult(offset)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+    
+    /*
+     * 회원 이름이 바뀌면 그 회원의 주문 요약에 저장된 이름도 한번에 바꿔준다.
+     */
+    public int updateMemberName(Long memberId, String memberName) {
+        return em.createQuery("update OrderSummary s set s.memberName = :memberName where s.memberId = :memberId")
+                .setParameter("memberName", memberName)
+                .setParameter("memberId", memberId)
+                .executeUpdate();
+    }
+    
+    /*
+     * 일괄 취소한 주문의 요약 상태를 한번에 바꿔준다.
+     */
+    public int cancelAll(List<Long> orderIds) {
+        return em.createQuery("update OrderSummary s set s.status = :status where s.orderId in :orderIds")
+                .setParameter("status", OrderStatus.CANCEL)
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+    }
+}
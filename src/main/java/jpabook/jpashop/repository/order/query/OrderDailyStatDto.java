@@ -0,0 +1,21 @@
+package jpabook.jpashop.repository.order.query;
+
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+public class OrderDailyStatDto {
+    private LocalDate orderDate;
+    private OrderStatus orderStatus;
+    private long orderCount;
+    private long revenue;
+    
+    public OrderDailyStatDto(Integer year, Integer month, Integer day, OrderStatus orderStatus, Long orderCount, Long revenue) {
+        this.orderDate = LocalDate.of(year, month, day);
+        this.orderStatus = orderStatus;
+        this.orderCount = orderCount;
+        this.revenue = revenue == null ? 0 : revenue;
+    }
+}
@@ -0,0 +1,65 @@
+package jpabook.jpashop.repository.order.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * order_id 순으로 정렬된 OrderFlatDto 를 한 번만 훑으면서 OrderQueryDto 로 묶어준다.
+ * <p>
+ * groupingBy 처럼 row 마다 key 객체와 map entry 를 만들지 않고,
+ * order_id 가 바뀌는 시점에 직전 주문이 완성된 것으로 보고 downstream 으로 넘긴다.
+ * └─> 입력이 order_id 로 정렬되어 있어야 한다. (OrderQueryRepository 의 flat 조회는 o.id 로 정렬)
+ */
+public class OrderFlatAssembler implements Consumer<OrderFlatDto> {
+    
+    private final Consumer<OrderQueryDto> downstream;
+    private OrderQueryDto current;
+    
+    public OrderFlatAssembler(Consumer<OrderQueryDto> downstream) {
+        this.downstream = downstream;
+    }
+    
+    public static List<OrderQueryDto> assemble(List<OrderFlatDto> flats) {
+        List<OrderQueryDto> result = new ArrayList<>();
+        OrderFlatAssembler assembler = new OrderFlatAssembler(result::add);
+        flats.forEach(assembler);
+        assembler.finish();
+        return result;
+    }
+    
+    @Override
+    public void accept(OrderFlatDto row) {
+        if (current == null || !current.getOrderId().equals(row.getOrderId())) {
+            emit();
+            current = new OrderQueryDto(
+                    row.getOrderId()
+                    , row.getName()
+                    , row.getOrderDate()
+                    , row.getOrderStatus()
+                    , row.getAddress()
+                    , new ArrayList<>()
+            );
+        }
+        current.getOrderItems().add(new OrderItemQueryDto(
+                row.getOrderId()
+                , row.getItemName()
+                , row.getOrderPrice()
+                , row.getCount()
+        ));
+    }
+    
+    /**
+     * 마지막 주문은 다음 order_id 가 오지 않으므로 입력이 끝난 뒤 직접 내보낸다.
+     */
+    public void finish() {
+        emit();
+    }
+    
+    private void emit() {
+        if (current != null) {
+            downstream.accept(current);
+            current = null;
+        }
+    }
+}
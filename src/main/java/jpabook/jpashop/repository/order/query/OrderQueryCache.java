@@ -0,0 +1,167 @@
+package jpabook.jpashop.repository.order.query;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.event.ItemChangedEvent;
+import jpabook.jpashop.event.MemberChangedEvent;
+import jpabook.jpashop.event.OrderChangedEvent;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * OrderQueryDto 를 order_id 단위로 들고 있는 read-through 캐시
+ * <p>
+ * 주문은 OrderService.order / cancelOrder 로만 바뀌므로 그 트랜잭션이 커밋된 뒤에 해당 주문만 무효화한다.
+ * OrderQueryDto 에는 회원 이름과 상품 이름도 들어 있기 때문에 회원, 상품이 수정되면 전체를 무효화한다.
+ * <p>
+ * 무효화와 DB 조회가 동시에 일어나면 조회해 온 값이 이미 오래된 값일 수 있으므로
+ * 무효화할 때마다 generation 을 올리고, 조회를 시작할 때와 generation 이 같을 때만 캐시에 넣는다.
+ * <p>
+ * OrderQueryDto 는 setter 가 있는 객체라서 캐시에 든 객체를 그대로 내주면 한 요청에서 고친 값이 다른 요청에 보인다.
+ * 요청마다 복사본을 만들어서 반환한다. (주문상품 목록은 수정할 수 없는 목록)
+ */
+@Component
+public class OrderQueryCache {
+    
+    private final OrderQueryRepository orderQueryRepository;
+    private final Cache<Long, OrderQueryDto> cache;
+    private final AtomicLong generation = new AtomicLong();
+    
+    private volatile List<Long> orderIds;     //전체 주문 id 목록, 주문이 생성되면 무효화
+    
+    public OrderQueryCache(OrderQueryRepository orderQueryRepository,
+                           @Value("${jpashop.order-cache.maximum-size:10000}") long maximumSize,
+                           @Value("${jpashop.order-cache.expire-after-write-seconds:600}") long expireAfterWriteSeconds) {
+        this.orderQueryRepository = orderQueryRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+    
+    /**
+     * 전체 주문 조회 (/api/v5/orders)
+     * └─> 캐시에 없는 주문만 모아서 한번에 조회한다.
+     */
+    public List<OrderQueryDto> findAll() {
+        return findAll(orderQueryRepository::findAllByDto_optimization);
+    }
+    
+    /**
+     * 전체 주문 조회 (/api/v4/orders)
+     * └─> 캐시에 없는 주문만 조회하고, 주문상품은 주문마다 따로 조회한다.
+     */
+    public List<OrderQueryDto> findAllOneByOne() {
+        return findAll(orderQueryRepository::findOrderQueryDtos);
+    }
+    
+    private List<OrderQueryDto> findAll(Function<List<Long>, List<OrderQueryDto>> loader) {
+        long startGeneration = generation.get();
+        
+        List<Long> ids = this.orderIds;
+        if (ids == null) {
+            ids = orderQueryRepository.findOrderIds();
+            if (generation.get() == startGeneration) {
+                this.orderIds = ids;
+            }
+        }
+        
+        Map<Long, OrderQueryDto> found = new HashMap<>(cache.getAllPresent(ids));
+        if (found.size() < ids.size()) {
+            List<Long> missingIds = ids.stream()
+                    .filter(id -> !found.containsKey(id))
+                    .collect(Collectors.toList());
+            
+            List<OrderQueryDto> loaded = loader.apply(missingIds);
+            Map<Long, OrderQueryDto> loadedMap = loaded.stream()
+                    .collect(Collectors.toMap(OrderQueryDto::getOrderId, o -> o));
+            if (generation.get() == startGeneration) {
+                cache.putAll(loadedMap);
+            }
+            found.putAll(loadedMap);
+        }
+        
+        List<OrderQueryDto> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            OrderQueryDto orderQueryDto = found.get(id);
+            if (orderQueryDto != null) {
+                result.add(copyOf(orderQueryDto));
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+    
+    public Stats stats() {
+        CacheStats stats = cache.stats();
+        return new Stats(stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount(), cache.estimatedSize());
+    }
+    
+    @TransactionalEventListener
+    public void onOrderChanged(OrderChangedEvent event) {
+        generation.incrementAndGet();
+        orderIds = null;
+        cache.invalidate(event.getOrderId());
+    }
+    
+    @TransactionalEventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        if (!event.isNewMember()) {
+            invalidateAll();
+        }
+    }
+    
+    @TransactionalEventListener
+    public void onItemChanged(ItemChangedEvent event) {
+        if (!event.isNewItem()) {
+            invalidateAll();
+        }
+    }
+    
+    private static OrderQueryDto copyOf(OrderQueryDto source) {
+        Address address = source.getAddress();
+        List<OrderItemQueryDto> orderItems = source.getOrderItems() == null
+                ? Collections.emptyList()
+                : source.getOrderItems().stream()
+                        .map(oi -> new OrderItemQueryDto(oi.getOrderId(), oi.getItemName(), oi.getOrderPrice(), oi.getCount()))
+                        .collect(Collectors.toList());
+        return new OrderQueryDto(
+                source.getOrderId(),
+                source.getName(),
+                source.getOrderDate(),
+                source.getOrderStatus(),
+                address == null ? null : new Address(address.getCity(), address.getStreet(), address.getZipcode()),
+                Collections.unmodifiableList(orderItems));
+    }
+    
+    private void invalidateAll() {
+        generation.incrementAndGet();
+        orderIds = null;
+        cache.invalidateAll();
+    }
+    
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+        private long hitCount;
+        private long missCount;
+        private double hitRate;
+        private long evictionCount;
+        private long size;
+    }
+}
@@ -1,22 +1,57 @@
 package jpabook.jpashop.repository.order.query;
 
 import lombok.RequiredArgsConstructor;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository
 @RequiredArgsConstructor
 public class OrderQueryRepository {
     
+    private static final String FLAT_QUERY =
+            "select new jpabook.jpashop.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, i.name, oi.orderPrice, oi.count)" +
+                    " from Order o" +
+                    " join o.member m" +
+                    " join o.delivery d" +
+                    " join o.orderItems oi" +
+                    " join oi.item i" +
+                    " order by o.id";
+    
+    private static final int FLAT_FETCH_SIZE = 500;
+    
     private final EntityManager em;
+    private final Executor orderQueryExecutor;
+    private final PlatformTransactionManager transactionManager;
     
+    @Value("${jpashop.order-query.in-chunk-size:512}")
+    private int inChunkSize;
     
-    public List<OrderQueryDto> findOrderQueryDtos() {
-        List<OrderQueryDto> result = findOrders();
+    @Value("${jpashop.order-query.parallel:false}")
+    private boolean parallel;
+    
+    
+    /*
+     * orderIds 에 해당하는 주문을 조회한 뒤 주문마다 주문상품을 따로 조회한다. (N + 1)
+     * └─> OrderQueryCache 에 없는 주문만 채우므로 캐시가 차 있으면 주문상품 쿼리는 바뀐 주문 수만큼만 나간다. (/api/v4/orders)
+     */
+    public List<OrderQueryDto> findOrderQueryDtos(List<Long> orderIds) {
+        List<OrderQueryDto> result = findOrders(orderIds);
         
         result.forEach(o -> {
             List<OrderItemQueryDto> orderItems = findOderItems(o.getOrderId());
@@ -33,17 +68,81 @@ public class OrderQueryRepository {
         return result;
     }
     
+    /*
+     * orderIds 에 해당하는 주문만 findAllByDto_optimization 과 같은 방법으로 조회
+     * └─> OrderQueryCache 에 없는 주문만 골라서 채울 때 사용한다.
+     */
+    public List<OrderQueryDto> findAllByDto_optimization(List<Long> orderIds) {
+        List<OrderQueryDto> result = findOrders(orderIds);
+        Map<Long, List<OrderItemQueryDto>> orderItemMap = findOrderItemMap(toOrderIds(result));
+        result.forEach(o -> o.setOrderItems(orderItemMap.get(o.getOrderId())));
+        return result;
+    }
+    
+    public List<Long> findOrderIds() {
+        return em.createQuery("select o.id from Order o order by o.id", Long.class)
+                .getResultList();
+    }
+    
+    /*
+     * in 절에 id 를 한번에 다 넣으면
+     *    1. id 개수마다 SQL 문장이 달라져서 실행 계획을 매번 새로 만들고
+     *    2. 주문이 많으면 아주 긴 쿼리 하나가 오래 실행된다.
+     *
+     * 그래서 inChunkSize (2의 거듭제곱) 단위로 나눠서 조회한다.
+     * 마지막 chunk 는 'in_clause_parameter_padding' 설정으로 bind 개수가 2의 거듭제곱으로 맞춰지므로
+     * chunk 모양이 몇 가지로 고정되어 캐시된 statement 를 재사용한다.
+     *
+     * parallel 설정이 켜져 있으면 chunk 를 orderQueryExecutor 에서 나눠서 조회한 뒤 하나의 map 으로 합친다.
+     * └─> 다른 스레드는 호출한 쪽의 트랜잭션 (과 EntityManager) 을 볼 수 없으므로 chunk 마다 각자 읽기 전용 트랜잭션으로 조회한다.
+     *     chunk 마다 조회 시점이 달라서 결과 전체가 한 시점의 스냅샷은 아니다.
+     *     호출한 쪽에 트랜잭션이 있으면 그 트랜잭션이 보는 데이터와 어긋나지 않도록 병렬로 조회하지 않는다.
+     */
     private Map<Long, List<OrderItemQueryDto>> findOrderItemMap(List<Long> orderIds) {
-        List<OrderItemQueryDto> orderItems = em.createQuery(
+        List<List<Long>> chunks = toChunks(orderIds, Integer.highestOneBit(Math.max(inChunkSize, 1)));
+        
+        List<List<OrderItemQueryDto>> results;
+        if (parallel && chunks.size() > 1 && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionManager);
+            readOnlyTransaction.setReadOnly(true);
+            List<CompletableFuture<List<OrderItemQueryDto>>> futures = chunks.stream()
+                    .map(chunk -> CompletableFuture.supplyAsync(
+                            () -> readOnlyTransaction.execute(status -> findOrderItems(chunk)), orderQueryExecutor))
+                    .collect(Collectors.toList());
+            results = futures.stream()
+                    .map(CompletableFuture::join)
+                    .collect(Collectors.toList());
+        } else {
+            results = chunks.stream()
+                    .map(this::findOrderItems)
+                    .collect(Collectors.toList());
+        }
+        
+        Map<Long, List<OrderItemQueryDto>> orderItemMap = new HashMap<>(orderIds.size() * 4 / 3 + 1);
+        for (List<OrderItemQueryDto> orderItems : results) {
+            for (OrderItemQueryDto orderItem : orderItems) {
+                orderItemMap.computeIfAbsent(orderItem.getOrderId(), id -> new ArrayList<>()).add(orderItem);
+            }
+        }
+        return orderItemMap;
+    }
+    
+    private List<OrderItemQueryDto> findOrderItems(List<Long> orderIds) {
+        return em.createQuery(
                 "select new jpabook.jpashop.repository.order.query.OrderItemQueryDto(oi.order.id, i.name, oi.orderPrice, oi.count)" +
                         " from OrderItem oi" +
                         " join oi.item i" +
                         " where oi.order.id in :orderIds", OrderItemQueryDto.class)
                 .setParameter("orderIds", orderIds)
                 .getResultList();
-        
-        return orderItems.stream()
-                .collect(Collectors.groupingBy(orderItemQueryDto -> orderItemQueryDto.getOrderId()));
+    }
+    
+    private static List<List<Long>> toChunks(List<Long> ids, int chunkSize) {
+        List<List<Long>> chunks = new ArrayList<>((ids.size() + chunkSize - 1) / chunkSize);
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            chunks.add(ids.subList(from, Math.min(from + chunkSize, ids.size())));
+        }
+        return chunks;
     }
     
     private List<Long> toOrderIds(List<OrderQueryDto> result) {
@@ -63,6 +162,21 @@ public class OrderQueryRepository {
                 .getResultList();
     }
     
+    private List<OrderQueryDto> findOrders(List<Long> orderIds) {
+        List<OrderQueryDto> result = new ArrayList<>(orderIds.size());
+        for (List<Long> chunk : toChunks(orderIds, Integer.highestOneBit(Math.max(inChunkSize, 1)))) {
+            result.addAll(em.createQuery(
+                    "select new jpabook.jpashop.repository.order.query.OrderQueryDto(o.id, m.name, o.orderDate, o.status, d.address)" +
+                            " from Order o" +
+                            " join o.member m" +
+                            " join o.delivery d" +
+                            " where o.id in :orderIds", OrderQueryDto.class)
+                    .setParameter("orderIds", chunk)
+                    .getResultList());
+        }
+        return result;
+    }
+    
     private List<OrderQueryDto> findOrders() {
         return em.createQuery(
                 "select new jpabook.jpashop.repository.order.query.OrderQueryDto(o.id, m.name, o.orderDate, o.status, d.address)" +
@@ -73,13 +187,52 @@ public class OrderQueryRepository {
     }
     
     public List<OrderFlatDto> findAllByDto_flat() {
+        return em.createQuery(FLAT_QUERY, OrderFlatDto.class)
+                .getResultList();
+    }
+    
+    /*
+     * findAllByDto_flat 과 같은 결과를 List 에 모으지 않고 한 건씩 action 에 넘겨준다.
+     *    1. getResultStream 은 내부적으로 ScrollMode.FORWARD_ONLY 커서를 사용한다.
+     *    2. fetchSize 만큼씩 DB 에서 끊어 읽기 때문에 전체 결과 크기와 상관없이 메모리 사용량이 일정하다.
+     *    3. DTO 로 바로 조회하므로 영속성 컨텍스트에 엔티티가 쌓이지 않는다.
+     *
+     * 커서는 커넥션이 열려있는 동안에만 읽을 수 있으므로 읽기 전용 트랜잭션 안에서 끝까지 소비한다.
+     */
+    @Transactional(readOnly = true)
+    public void forEachByDto_flat(int fetchSize, Consumer<OrderFlatDto> action) {
+        try (Stream<OrderFlatDto> stream = em.createQuery(FLAT_QUERY, OrderFlatDto.class)
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .getResultStream()) {
+            stream.forEach(action);
+        }
+    }
+    
+    /*
+     * flat 조회 결과를 OrderQueryDto 로 묶어서 반환
+     * └─> o.id 로 정렬된 결과를 OrderFlatAssembler 가 한 번에 훑으면서 묶기 때문에
+     *     row 수에 비례하는 비용만 들고 DB 에서 읽은 순서가 그대로 유지된다.
+     */
+    @Transactional(readOnly = true)
+    public List<OrderQueryDto> findAllByDto_flat_grouped() {
+        List<OrderQueryDto> result = new ArrayList<>();
+        OrderFlatAssembler assembler = new OrderFlatAssembler(result::add);
+        forEachByDto_flat(FLAT_FETCH_SIZE, assembler);
+        assembler.finish();
+        return result;
+    }
+    
+    /*
+     * 일별, 상태별 주문 건수와 매출 합계
+     * └─> OrderStatisticsService 가 애플리케이션이 뜰 때 카운터를 채우는 용도로 한 번 사용한다.
+     */
+    public List<OrderDailyStatDto> findDailyStats() {
         return em.createQuery(
-                "select new jpabook.jpashop.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, i.name, oi.orderPrice, oi.count)" +
+                "select new jpabook.jpashop.repository.order.query.OrderDailyStatDto(" +
+                        "year(o.orderDate), month(o.orderDate), day(o.orderDate), o.status, count(distinct o.id), sum(oi.orderPrice * oi.count))" +
                         " from Order o" +
-                        " join o.member m" +
-                        " join o.delivery d" +
                         " join o.orderItems oi" +
-                        " join oi.item i", OrderFlatDto.class)
+                        " group by year(o.orderDate), month(o.orderDate), day(o.orderDate), o.status", OrderDailyStatDto.class)
                 .getResultList();
     }
 }
@@ -0,0 +1,57 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.event.ItemChangedEvent;
+import jpabook.jpashop.event.MemberChangedEvent;
+import jpabook.jpashop.event.OrderChangedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 조회 API 의 ETag 로 사용하는 회원 / 주문 aggregate 버전
+ * <p>
+ * 회원, 주문이 바뀐 트랜잭션이 커밋되면 버전을 올린다.
+ * 컨트롤러는 조회 전에 ETag 를 먼저 확인해서 바뀐 게 없으면 DB 조회와 JSON 변환 없이 304 로 응답한다.
+ * └─> 버전은 조회하기 전에 읽으므로, 조회와 커밋이 겹쳐도 새 결과에 예전 ETag 가 붙을 뿐 (다음 요청에서 다시 받는다)
+ *     예전 결과에 새 ETag 가 붙지는 않는다.
+ *     재시작하면 버전이 0 부터 다시 시작하므로 ETag 에 시작 시각을 같이 넣는다.
+ */
+@Component
+public class AggregateVersions {
+    
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong memberVersion = new AtomicLong();
+    private final AtomicLong orderVersion = new AtomicLong();
+    
+    /**
+     * @param format 응답 형식 (json, smile, cbor), 형식마다 응답 내용이 다르므로 ETag 도 달라야 한다.
+     */
+    public String memberETag(String format) {
+        return "\"members-" + epoch + "-" + memberVersion.get() + "-" + format + "\"";
+    }
+    
+    public String orderETag(String format) {
+        return "\"orders-" + epoch + "-" + orderVersion.get() + "-" + format + "\"";
+    }
+    
+    @TransactionalEventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        memberVersion.incrementAndGet();
+        if (!event.isNewMember()) {
+            orderVersion.incrementAndGet();     //주문 조회 결과에 회원 이름이 들어간다.
+        }
+    }
+    
+    @TransactionalEventListener
+    public void onOrderChanged(OrderChangedEvent event) {
+        orderVersion.incrementAndGet();
+    }
+    
+    @TransactionalEventListener
+    public void onItemChanged(ItemChangedEvent event) {
+        if (!event.isNewItem()) {
+            orderVersion.incrementAndGet();     //주문 조회 결과에 상품 이름, 가격이 들어간다.
+        }
+    }
+}
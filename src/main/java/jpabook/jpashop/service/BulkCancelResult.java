@@ -0,0 +1,16 @@
+package jpabook.jpashop.service;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 일괄 취소 결과
+ */
+@Getter
+public class BulkCancelResult {
+    private List<Long> cancelled = new ArrayList<>();   //취소한 주문
+    private List<Long> rejected = new ArrayList<>();    //배송이 완료되어 취소할 수 없는 주문
+    private List<Long> skipped = new ArrayList<>();     //없거나 이미 취소된 주문
+}
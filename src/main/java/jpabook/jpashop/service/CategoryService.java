@@ -0,0 +1,73 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.Item;
+import jpabook.jpashop.event.CategoryChangedEvent;
+import jpabook.jpashop.repository.CategoryRepository;
+import jpabook.jpashop.repository.ItemRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class CategoryService {
+    
+    private final CategoryRepository categoryRepository;
+    private final ItemRepository itemRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    
+    /**
+     * 카테고리 추가
+     * └─> parentId 가 없으면 루트 카테고리
+     */
+    @Transactional
+    public Long saveCategory(String name, Long parentId) {
+        Category category = new Category();
+        category.setName(name);
+        if (parentId != null) {
+            findCategory(parentId).addChildCategory(category);
+        }
+        categoryRepository.save(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(category.getId()));
+        return category.getId();
+    }
+    
+    /**
+     * 카테고리를 다른 부모 밑으로 이동
+     * └─> 하위 카테고리의 path 는 addChildCategory 가 같이 바꾼다. (변경 감지)
+     */
+    @Transactional
+    public void moveCategory(Long categoryId, Long parentId) {
+        findCategory(parentId).addChildCategory(findCategory(categoryId));
+        eventPublisher.publishEvent(new CategoryChangedEvent(categoryId));
+    }
+    
+    @Transactional
+    public void addItem(Long categoryId, Long itemId) {
+        Item item = itemRepository.findOne(itemId);
+        if (item == null) {
+            throw new IllegalArgumentException("존재하지 않는 상품입니다. itemId=" + itemId);
+        }
+        findCategory(categoryId).addItem(item);
+    }
+    
+    /**
+     * 하위 카테고리 전체와 그 상품 (자신 포함)
+     */
+    public List<Category> findDescendantsWithItems(Long categoryId) {
+        return categoryRepository.findDescendantsWithItems(findCategory(categoryId));
+    }
+    
+    private Category findCategory(Long categoryId) {
+        Category category = categoryRepository.findOne(categoryId);
+        if (category == null) {
+            throw new IllegalArgumentException("존재하지 않는 카테고리입니다. categoryId=" + categoryId);
+        }
+        return category;
+    }
+}
@@ -0,0 +1,164 @@
+package jpabook.jpashop.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jpabook.jpashop.domain.IdempotencyRecord;
+import jpabook.jpashop.repository.IdempotencyRecordRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idempotency-Key 별 응답 저장소
+ * <p>
+ *    1. 처음 들어온 키는 idempotency_record 테이블에 '처리 중' 으로 먼저 저장하고 요청을 처리하게 한다.
+ *       └─> 키가 기본키이므로 동시에 들어온 같은 키의 요청은 (다른 인스턴스에서 들어왔더라도) 하나만 저장에 성공한다.
+ *    2. 처리 중인 키로 또 들어오면 IN_PROGRESS, 처리가 끝난 키면 저장된 응답을 돌려준다.
+ *    3. 기록은 ttl-seconds 가 지나면 새 요청이 가져갈 수 있고, 테이블에서는 주기적으로 한번에 지운다.
+ *    4. 처리 중인 채로 in-progress-timeout-seconds 가 지난 기록 (처리하던 인스턴스가 죽은 경우) 도 새 요청이 가져간다.
+ *       └─> 가장 오래 걸리는 요청보다 길게 잡아야 한다.
+ * <p>
+ * 메모리 캐시 (Caffeine) 는 테이블 조회를 줄이는 용도로만 쓴다.
+ * 처리가 끝난 기록과 이 인스턴스가 처리 중인 기록만 넣으므로 캐시에서 빠져도 테이블에서 다시 찾는다.
+ * <p>
+ * 필터에서 호출하므로 (open-in-view 밖) 단계마다 각자 트랜잭션으로 실행한다.
+ * └─> 같은 키가 이미 있어서 insert 가 실패한 트랜잭션은 롤백되므로 기존 기록은 새 트랜잭션에서 조회한다.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+    
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<String, IdempotencyRecord> entries;
+    private final long ttlSeconds;
+    private final long inProgressTimeoutSeconds;
+    
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              TransactionTemplate transactionTemplate,
+                              @Value("${jpashop.idempotency.maximum-size:100000}") long maximumSize,
+                              @Value("${jpashop.idempotency.ttl-seconds:86400}") long ttlSeconds,
+                              @Value("${jpashop.idempotency.in-progress-timeout-seconds:60}") long inProgressTimeoutSeconds) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+        this.ttlSeconds = ttlSeconds;
+        this.inProgressTimeoutSeconds = inProgressTimeoutSeconds;
+    }
+    
+    /**
+     * 키 사용 시작
+     * └─> ACQUIRED 를 받은 쪽만 요청을 처리하고, 끝나면 complete 또는 release 를 호출해야 한다.
+     */
+    public Lookup begin(String key, String requestMethod, String requestUri, String requestHash) {
+        IdempotencyRecord cached = entries.getIfPresent(key);
+        if (cached != null) {
+            return cached.isCompleted() ? Lookup.replay(cached) : Lookup.IN_PROGRESS;
+        }
+        
+        IdempotencyRecord record = IdempotencyRecord.createInProgress(key, requestMethod, requestUri, requestHash);
+        try {
+            transactionTemplate.execute(status -> {
+                idempotencyRecordRepository.insert(record);
+                return null;
+            });
+            entries.put(key, record);
+            return Lookup.ACQUIRED;
+        } catch (DataIntegrityViolationException e) {
+            //다른 요청이 먼저 저장한 키
+        }
+        
+        Lookup lookup = transactionTemplate.execute(status -> lookupExisting(record));
+        if (lookup.getState() == State.ACQUIRED) {
+            entries.put(key, record);
+        } else if (lookup.getState() == State.REPLAY) {
+            entries.put(key, lookup.getRecord());
+        }
+        return lookup;
+    }
+    
+    private Lookup lookupExisting(IdempotencyRecord record) {
+        IdempotencyRecord existing = idempotencyRecordRepository.findOne(record.getKey());
+        if (existing == null) {
+            //그 사이에 처리에 실패해서 지워졌다. 클라이언트가 다시 시도하면 된다.
+            return Lookup.IN_PROGRESS;
+        }
+        
+        LocalDateTime cutoff = LocalDateTime.now()
+                .minusSeconds(existing.isCompleted() ? ttlSeconds : inProgressTimeoutSeconds);
+        if (existing.getCreatedAt().isAfter(cutoff)) {
+            return existing.isCompleted() ? Lookup.replay(existing) : Lookup.IN_PROGRESS;
+        }
+        
+        //만료된 응답이나 처리하다 멈춘 기록은 새 요청이 가져간다.
+        if (idempotencyRecordRepository.takeOver(record, cutoff) == 1) {
+            return Lookup.ACQUIRED;
+        }
+        return Lookup.IN_PROGRESS;
+    }
+    
+    /**
+     * 처리가 끝난 요청의 응답 저장
+     */
+    public void complete(String key, int status, String contentType, String location, byte[] body) {
+        IdempotencyRecord record = transactionTemplate.execute(transactionStatus -> {
+            IdempotencyRecord inProgress = idempotencyRecordRepository.findOne(key);
+            if (inProgress == null || inProgress.isCompleted()) {
+                throw new IllegalStateException("처리 중인 기록이 없습니다. key=" + key);
+            }
+            inProgress.complete(status, contentType, location, body);
+            return inProgress;
+        });
+        entries.put(key, record);
+    }
+    
+    /*
+     * 처리에 실패하면 같은 키로 다시 시도할 수 있도록 '처리 중' 기록을 지운다.
+     */
+    public void release(String key) {
+        try {
+            transactionTemplate.execute(status -> idempotencyRecordRepository.deleteInProgress(key));
+        } finally {
+            entries.invalidate(key);
+        }
+    }
+    
+    @Transactional
+    @Scheduled(fixedDelayString = "${jpashop.idempotency.eviction-interval-ms:60000}")
+    public void evictExpired() {
+        int deleted = idempotencyRecordRepository.deleteCreatedBefore(LocalDateTime.now().minusSeconds(ttlSeconds));
+        if (deleted > 0) {
+            log.debug("expired idempotency records deleted. count={}", deleted);
+        }
+    }
+    
+    public enum State {
+        ACQUIRED, IN_PROGRESS, REPLAY
+    }
+    
+    @Getter
+    @AllArgsConstructor
+    public static class Lookup {
+        private static final Lookup ACQUIRED = new Lookup(State.ACQUIRED, null);
+        private static final Lookup IN_PROGRESS = new Lookup(State.IN_PROGRESS, null);
+        
+        private State state;
+        private IdempotencyRecord record;   //REPLAY 일 때만 존재
+        
+        static Lookup replay(IdempotencyRecord record) {
+            return new Lookup(State.REPLAY, record);
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.Item;
+import jpabook.jpashop.event.ItemChangedEvent;
 import jpabook.jpashop.repository.ItemRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @Service
@@ -14,10 +18,17 @@ import java.util.List;
 public class ItemService {
 
     private final ItemRepository itemRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectProvider<StockLedger> stockLedger;    //jpashop.stock-ledger.enabled=true 일 때만 존재
 
     @Transactional
     public void saveItem(Item item) {
+        boolean newItem = item.getId() == null;
+        if (!newItem) {
+            flushStockLedger();
+        }
         itemRepository.save(item);
+        eventPublisher.publishEvent(new ItemChangedEvent(item.getId(), item.getName(), item.getStockQuantity(), newItem));
     }
     
     @Transactional
@@ -27,16 +38,33 @@ public class ItemService {
      * └─> 의도하지 않은 동작이 발생할 수 있음.
      */
     public void updateItem(Long itemId, String name, int price, int stockQuantity) {
+        flushStockLedger();     //flush 가 version 을 올리므로 상품을 조회하기 전에 한다.
         Item findItem = itemRepository.findOne(itemId);
         findItem.setName(name);
         findItem.setPrice(price);
         findItem.setStockQuantity(stockQuantity);
+        eventPublisher.publishEvent(new ItemChangedEvent(itemId, name, stockQuantity, false));
+    }
+
+    /*
+     * 재고를 절대값으로 덮어쓰기 전에 장부에 쌓인 변경량을 먼저 DB 에 반영한다.
+     * └─> 남겨두면 다음 flush 때 수정 전에 커밋된 주문의 변경량이 입력한 재고 위에 한 번 더 더해진다.
+     */
+    private void flushStockLedger() {
+        StockLedger ledger = stockLedger.getIfAvailable();
+        if (ledger != null) {
+            ledger.flush();
+        }
     }
 
     public List<Item> findItems() {
         return itemRepository.findAll();
     }
 
+    public List<Item> findItems(Collection<Long> itemIds) {
+        return itemRepository.findAllById(itemIds);
+    }
+
     public Item findOne(Long itemId) {
         return itemRepository.findOne(itemId);
     }
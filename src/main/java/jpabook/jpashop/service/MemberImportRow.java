@@ -0,0 +1,19 @@
+package jpabook.jpashop.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * 회원 일괄 등록 파일의 한 줄 (CSV: name,city,street,zipcode / NDJSON: 같은 이름의 필드)
+ */
+@Getter @Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MemberImportRow {
+    private String name;
+    private String city;
+    private String street;
+    private String zipcode;
+}
@@ -0,0 +1,256 @@
+package jpabook.jpashop.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.event.MemberChangedEvent;
+import jpabook.jpashop.repository.MemberNameFilter;
+import jpabook.jpashop.repository.MemberRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import javax.persistence.EntityManager;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * 회원 일괄 등록
+ * <p>
+ * 파일을 한 줄씩 읽으면서 (전체를 메모리에 올리지 않는다) chunk-size 건씩 한 트랜잭션으로 저장한다.
+ *    1. 파일 안에서 중복된 이름은 메모리에서 걸러내고
+ *    2. 이미 가입된 이름은 MemberNameFilter 가 있을 수도 있다고 한 이름만 모아서 chunk 당 in 쿼리 한번으로 확인한다.
+ *    3. insert 는 'hibernate.jdbc.batch_size' 만큼 모아서 JDBC batch 로 실행한다.
+ * chunk 가 끝날 때마다 진행 상황을 progress 로 알려준다.
+ * <p>
+ * MemberService.join 처럼 한 건씩 중복 확인 쿼리와 insert 를 하지 않는다.
+ * <p>
+ * open-in-view 로 요청 동안 같은 EntityManager 를 쓰므로 chunk 가 끝날 때마다 영속성 컨텍스트를 비운다.
+ * └─> 비우지 않으면 저장한 회원이 요청이 끝날 때까지 남아서 메모리가 파일 크기만큼 늘고,
+ *     flush 할 때마다 앞에서 저장한 회원까지 모두 변경 감지를 해서 점점 느려진다.
+ */
+@Slf4j
+@Service
+public class MemberImportService {
+    
+    public enum Format {
+        CSV, NDJSON
+    }
+    
+    private static final String CSV_HEADER = "name,";
+    
+    private final MemberRepository memberRepository;
+    private final EntityManager em;
+    private final MemberNameFilter memberNameFilter;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    
+    public MemberImportService(MemberRepository memberRepository,
+                               EntityManager em,
+                               MemberNameFilter memberNameFilter,
+                               TransactionTemplate transactionTemplate,
+                               ApplicationEventPublisher eventPublisher,
+                               ObjectMapper objectMapper,
+                               @Value("${jpashop.member-import.chunk-size:1000}") int chunkSize) {
+        this.memberRepository = memberRepository;
+        this.em = em;
+        this.memberNameFilter = memberNameFilter;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+    
+    public ImportProgress importMembers(BufferedReader reader, Format format, Consumer<ImportProgress> progress) throws IOException {
+        Counter counter = new Counter(System.nanoTime());
+        Set<String> seen = new HashSet<>();
+        List<MemberImportRow> chunk = new ArrayList<>(chunkSize);
+        
+        String line;
+        boolean first = true;
+        while ((line = reader.readLine()) != null) {
+            boolean header = first && format == Format.CSV && line.startsWith(CSV_HEADER);
+            first = false;
+            if (header || line.trim().isEmpty()) {
+                continue;
+            }
+            counter.rows++;
+            
+            MemberImportRow row = parse(line, format);
+            if (row == null || !StringUtils.hasText(row.getName())) {
+                counter.invalid++;
+                continue;
+            }
+            if (!seen.add(row.getName())) {
+                counter.duplicated++;
+                continue;
+            }
+            
+            chunk.add(row);
+            if (chunk.size() == chunkSize) {
+                saveChunk(chunk, counter);
+                progress.accept(counter.progress(false));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            saveChunk(chunk, counter);
+        }
+        
+        ImportProgress result = counter.progress(true);
+        progress.accept(result);
+        return result;
+    }
+    
+    private void saveChunk(List<MemberImportRow> chunk, Counter counter) {
+        counter.chunks++;
+        try {
+            counter.imported += insertNew(chunk, counter);
+        } catch (DataIntegrityViolationException e) {
+            //이미 있는지 확인한 뒤에 다른 요청이 같은 이름으로 가입한 경우, 다시 확인하고 한번 더 시도한다.
+            log.info("member import chunk conflicted, retry. chunk={}", counter.chunks);
+            counter.imported += insertNew(chunk, counter);
+        }
+    }
+    
+    /*
+     * 이미 가입된 이름을 빼고 한 트랜잭션으로 저장한다.
+     */
+    private int insertNew(List<MemberImportRow> chunk, Counter counter) {
+        List<String> candidates = chunk.stream()
+                .map(MemberImportRow::getName)
+                .filter(memberNameFilter::mightContain)
+                .collect(toList());
+        Set<String> existing = candidates.isEmpty()
+                ? new HashSet<>()
+                : new HashSet<>(memberRepository.findNamesByNameIn(candidates));
+        
+        List<Member> members = new ArrayList<>(chunk.size());
+        for (MemberImportRow row : chunk) {
+            if (existing.contains(row.getName())) {
+                continue;
+            }
+            Member member = new Member();
+            member.setName(row.getName());
+            member.setAddress(new Address(row.getCity(), row.getStreet(), row.getZipcode()));
+            members.add(member);
+        }
+        
+        try {
+            transactionTemplate.execute(status -> {
+                memberRepository.saveAll(members);
+                memberRepository.flush();
+                for (Member member : members) {
+                    eventPublisher.publishEvent(new MemberChangedEvent(member.getId(), member.getName(), true));
+                }
+                return null;
+            });
+        } finally {
+            //커밋이든 롤백이든 이 chunk 의 회원은 더 이상 관리할 필요가 없다.
+            em.clear();
+        }
+        
+        counter.duplicated += existing.size();
+        for (Member member : members) {
+            memberNameFilter.put(member.getName());
+        }
+        return members.size();
+    }
+    
+    private MemberImportRow parse(String line, Format format) {
+        if (format == Format.NDJSON) {
+            try {
+                return objectMapper.readValue(line, MemberImportRow.class);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        
+        List<String> fields = splitCsv(line);
+        if (fields.isEmpty()) {
+            return null;
+        }
+        return new MemberImportRow(
+                fields.get(0).trim(),
+                fields.size() > 1 ? fields.get(1) : null,
+                fields.size() > 2 ? fields.get(2) : null,
+                fields.size() > 3 ? fields.get(3) : null);
+    }
+    
+    /*
+     * 쉼표로 나누되 큰따옴표로 감싼 값 안의 쉼표, 두 번 쓴 큰따옴표("")는 값으로 본다.
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+    
+    private static class Counter {
+        private final long startNanos;
+        private long rows;
+        private long chunks;
+        private long imported;
+        private long duplicated;
+        private long invalid;
+        
+        Counter(long startNanos) {
+            this.startNanos = startNanos;
+        }
+        
+        ImportProgress progress(boolean done) {
+            double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+            long rowsPerSecond = seconds == 0 ? 0 : (long) (rows / seconds);
+            return new ImportProgress(chunks, rows, imported, duplicated, invalid, rowsPerSecond, done);
+        }
+    }
+    
+    @Getter
+    @AllArgsConstructor
+    public static class ImportProgress {
+        private long chunk;             //저장한 chunk 수
+        private long rows;              //읽은 줄 수
+        private long imported;          //저장한 회원 수
+        private long duplicated;        //파일 안에서 또는 이미 가입되어 있어서 건너뛴 수
+        private long invalid;           //형식이 잘못되었거나 이름이 없어서 건너뛴 수
+        private long rowsPerSecond;     //시작부터 지금까지 초당 처리한 줄 수
+        private boolean done;
+    }
+}
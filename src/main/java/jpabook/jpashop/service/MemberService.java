@@ -1,8 +1,13 @@
 package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.event.MemberChangedEvent;
+import jpabook.jpashop.repository.MemberNameFilter;
 import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.repository.OrderSummaryRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -14,6 +19,9 @@ import java.util.List;
 public class MemberService {
 
     private final MemberRepository memberRepository;
+    private final MemberNameFilter memberNameFilter;
+    private final OrderSummaryRepository orderSummaryRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * 회원 가입
@@ -30,14 +38,28 @@ public class MemberService {
      * 어느 정도의 성능 최적화를 이룰 수 있다.
      */
     public Long join(Member member) {
-        validateDuplicateMember(member);
-        memberRepository.save(member);
+        validateDuplicateName(member.getName());
+        try {
+            //unique 제약조건 위반을 여기서 확인할 수 있도록 바로 insert 한다.
+            memberRepository.saveAndFlush(member);
+        } catch (DataIntegrityViolationException e) {
+            //중복 확인과 insert 사이에 같은 이름으로 먼저 가입한 경우
+            throw new IllegalStateException("이미 존재하는 회원입니다.", e);
+        }
+        memberNameFilter.put(member.getName());
+        eventPublisher.publishEvent(new MemberChangedEvent(member.getId(), member.getName(), true));
         return member.getId();
     }
 
-    private void validateDuplicateMember(Member member) {
-        List<Member> findMembers = memberRepository.findByName(member.getName());
-        if (!findMembers.isEmpty()) {
+    /*
+     * Bloom filter 가 없다고 하면 쿼리 없이 통과시키고, 있을 수도 있다고 하면 DB 에서 확인한다.
+     * └─> 동시에 같은 이름으로 가입하는 경우는 member.name 의 unique 제약조건이 막는다.
+     */
+    private void validateDuplicateName(String name) {
+        if (!memberNameFilter.mightContain(name)) {
+            return;
+        }
+        if (memberRepository.existsByName(name)) {
             throw new IllegalStateException("이미 존재하는 회원입니다.");
         }
     }
@@ -61,6 +83,18 @@ public class MemberService {
     public void update(Long id, String name) {
 //        Member member = memberRepository.findOne(id);
         Member member = memberRepository.findById(id).get();
-        member.setName(name);
+        if (!name.equals(member.getName())) {
+            //가입과 같은 방법으로 중복 확인을 하고, 제약조건 위반도 여기서 확인할 수 있도록 바로 flush 한다.
+            validateDuplicateName(name);
+            member.setName(name);
+            try {
+                memberRepository.flush();
+            } catch (DataIntegrityViolationException e) {
+                throw new IllegalStateException("이미 존재하는 회원입니다.", e);
+            }
+        }
+        memberNameFilter.put(name);
+        orderSummaryRepository.updateMemberName(id, name);
+        eventPublisher.publishEvent(new MemberChangedEvent(id, name, false));
     }
 }
@@ -0,0 +1,15 @@
+package jpabook.jpashop.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 주문 한 건을 만드는데 필요한 값
+ */
+@Getter
+@AllArgsConstructor
+public class OrderCommand {
+    private Long memberId;
+    private Long itemId;
+    private int count;
+}
@@ -0,0 +1,244 @@
+package jpabook.jpashop.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jpabook.jpashop.exception.OrderIntakeFullException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 비동기 주문 접수 (jpashop.order-intake.enabled=true 일 때만 사용)
+ * <p>
+ * 주문 요청마다 트랜잭션을 하나씩 커밋하면 요청이 몰릴 때 커밋 대기로 줄이 길어진다.
+ *    1. 요청은 검사만 하고 크기가 정해진 큐에 넣은 뒤 접수 번호를 바로 돌려준다.
+ *       └─> 큐가 가득 차면 OrderIntakeFullException (503) 으로 거절해서 밀려 있다는 것을 드러낸다.
+ *    2. 쓰기 스레드 하나가 큐에서 최대 max-group-size 건, 또는 max-wait-ms 동안 모인 주문을
+ *       한 트랜잭션으로 커밋한다. (OrderService.orders)
+ *    3. 묶음 중 하나라도 실패하면 (재고 부족 등) 그 묶음은 한 건씩 다시 처리해서 실패한 주문만 골라낸다.
+ *    4. 처리 결과는 접수 번호로 조회한다. (status-ttl-seconds 동안 보관)
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "jpashop.order-intake.enabled", havingValue = "true")
+public class OrderIntakeService {
+    
+    private final OrderService orderService;
+    private final OrderRetryTemplate orderRetryTemplate;
+    private final BlockingQueue<Pending> queue;
+    private final Cache<String, IntakeStatus> statuses;
+    private final int maxGroupSize;
+    private final long maxWaitMillis;
+    
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder groups = new LongAdder();
+    private final LongAdder groupedOrders = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    
+    private volatile boolean running = true;
+    private Thread writer;
+    
+    public OrderIntakeService(OrderService orderService,
+                              OrderRetryTemplate orderRetryTemplate,
+                              @Value("${jpashop.order-intake.queue-capacity:10000}") int queueCapacity,
+                              @Value("${jpashop.order-intake.max-group-size:100}") int maxGroupSize,
+                              @Value("${jpashop.order-intake.max-wait-ms:10}") long maxWaitMillis,
+                              @Value("${jpashop.order-intake.status-ttl-seconds:600}") long statusTtlSeconds) {
+        this.orderService = orderService;
+        this.orderRetryTemplate = orderRetryTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.statuses = Caffeine.newBuilder()
+                .expireAfterWrite(statusTtlSeconds, TimeUnit.SECONDS)
+                .build();
+        this.maxGroupSize = maxGroupSize;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+    
+    @PostConstruct
+    public void start() {
+        writer = new Thread(this::writeLoop, "order-intake-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    /**
+     * 주문 접수
+     * └─> 접수 번호를 돌려주고, 실제 주문은 쓰기 스레드가 만든다.
+     */
+    public String accept(OrderCommand command) {
+        if (command.getMemberId() == null || command.getItemId() == null || command.getCount() < 1) {
+            throw new IllegalArgumentException("주문 요청이 올바르지 않습니다.");
+        }
+        if (!running) {
+            throw new OrderIntakeFullException("주문 접수를 종료하고 있습니다.");
+        }
+        
+        String acceptanceId = UUID.randomUUID().toString();
+        statuses.put(acceptanceId, IntakeStatus.accepted(acceptanceId));
+        if (!queue.offer(new Pending(acceptanceId, command))) {
+            statuses.invalidate(acceptanceId);
+            rejected.increment();
+            throw new OrderIntakeFullException("주문 접수 큐가 가득 찼습니다.");
+        }
+        accepted.increment();
+        return acceptanceId;
+    }
+    
+    public IntakeStatus findStatus(String acceptanceId) {
+        return statuses.getIfPresent(acceptanceId);
+    }
+    
+    public Stats stats() {
+        long groupCount = groups.sum();
+        return new Stats(queue.size(), queue.remainingCapacity(),
+                accepted.sum(), rejected.sum(), completed.sum(), failed.sum(),
+                groupCount, groupCount == 0 ? 0 : (double) groupedOrders.sum() / groupCount);
+    }
+    
+    /*
+     * 남은 주문을 마저 처리한 뒤 종료
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+    
+    private void writeLoop() {
+        List<Pending> group = new ArrayList<>(maxGroupSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(group);
+                if (!group.isEmpty()) {
+                    commit(group);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("order intake writer failed. group={}", group.size(), e);
+            } finally {
+                group.clear();
+            }
+        }
+    }
+    
+    /*
+     * 첫 주문을 기다린 뒤 max-group-size 가 찰 때까지, 최대 max-wait-ms 동안 모은다.
+     */
+    private void collect(List<Pending> group) throws InterruptedException {
+        Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        group.add(first);
+        
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        while (group.size() < maxGroupSize) {
+            queue.drainTo(group, maxGroupSize - group.size());
+            long remaining = deadline - System.nanoTime();
+            if (group.size() >= maxGroupSize || remaining <= 0) {
+                break;
+            }
+            Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            group.add(next);
+        }
+    }
+    
+    private void commit(List<Pending> group) {
+        List<OrderCommand> commands = new ArrayList<>(group.size());
+        for (Pending pending : group) {
+            commands.add(pending.command);
+        }
+        
+        try {
+            List<Long> orderIds = orderRetryTemplate.execute(() -> orderService.orders(commands));
+            groups.increment();
+            groupedOrders.add(group.size());
+            for (int i = 0; i < group.size(); i++) {
+                complete(group.get(i), orderIds.get(i));
+            }
+        } catch (RuntimeException e) {
+            //묶음 전체가 롤백되었으므로 한 건씩 따로 처리한다.
+            log.info("order intake group failed, retry one by one. group={}, cause={}", group.size(), e.toString());
+            for (Pending pending : group) {
+                OrderCommand command = pending.command;
+                try {
+                    Long orderId = orderRetryTemplate.execute(
+                            () -> orderService.order(command.getMemberId(), command.getItemId(), command.getCount()));
+                    complete(pending, orderId);
+                } catch (RuntimeException each) {
+                    failed.increment();
+                    statuses.put(pending.acceptanceId, IntakeStatus.failed(pending.acceptanceId, each.getMessage()));
+                }
+            }
+        }
+    }
+    
+    private void complete(Pending pending, Long orderId) {
+        completed.increment();
+        statuses.put(pending.acceptanceId, IntakeStatus.completed(pending.acceptanceId, orderId));
+    }
+    
+    @AllArgsConstructor
+    private static class Pending {
+        private final String acceptanceId;
+        private final OrderCommand command;
+    }
+    
+    public enum IntakeState {
+        ACCEPTED, COMPLETED, FAILED
+    }
+    
+    @Getter
+    @AllArgsConstructor
+    public static class IntakeStatus {
+        private String acceptanceId;
+        private IntakeState state;
+        private Long orderId;       //COMPLETED 일 때만 존재
+        private String message;     //FAILED 일 때만 존재
+        
+        static IntakeStatus accepted(String acceptanceId) {
+            return new IntakeStatus(acceptanceId, IntakeState.ACCEPTED, null, null);
+        }
+        
+        static IntakeStatus completed(String acceptanceId, Long orderId) {
+            return new IntakeStatus(acceptanceId, IntakeState.COMPLETED, orderId, null);
+        }
+        
+        static IntakeStatus failed(String acceptanceId, String message) {
+            return new IntakeStatus(acceptanceId, IntakeState.FAILED, null, message);
+        }
+    }
+    
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+        private int queueSize;
+        private int remainingCapacity;
+        private long accepted;
+        private long rejected;          //큐가 가득 차서 거절한 수
+        private long completed;
+        private long failed;
+        private long groups;            //한 트랜잭션으로 커밋한 묶음 수
+        private double averageGroupSize;
+    }
+}
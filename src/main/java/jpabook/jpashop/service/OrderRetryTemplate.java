@@ -0,0 +1,104 @@
+package jpabook.jpashop.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.OptimisticLockException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 주문 트랜잭션을 낙관적 락 충돌이 났을 때만 다시 실행
+ * <p>
+ * Item, Order 에 @Version 이 있으므로 같은 row 를 동시에 고치면 나중에 커밋하는 트랜잭션이 실패한다.
+ * 충돌은 드물게 일어나므로 lock 을 잡고 기다리는 대신, 실패한 트랜잭션을 처음부터 다시 실행한다.
+ *    1. 트랜잭션 밖에서 호출해야 한다. (재시도마다 새 트랜잭션, 새 영속성 컨텍스트)
+ *    2. 재시도 간격은 지수적으로 늘리고 0 ~ 간격 사이에서 무작위로 고른다. (full jitter)
+ *       └─> 같이 충돌한 요청들이 같은 시각에 다시 부딪히지 않도록
+ *    3. max-attempts 까지 실패하면 마지막 예외를 그대로 던진다.
+ */
+@Slf4j
+@Component
+public class OrderRetryTemplate {
+    
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    
+    public OrderRetryTemplate(@Value("${jpashop.order-retry.max-attempts:3}") int maxAttempts,
+                              @Value("${jpashop.order-retry.backoff-ms:20}") long backoffMillis,
+                              @Value("${jpashop.order-retry.max-backoff-ms:200}") long maxBackoffMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("max-attempts 는 1 이상이어야 합니다.");
+        }
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+    
+    public <T> T execute(Supplier<T> action) {
+        calls.increment();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    log.warn("optimistic lock conflict. give up after {} attempts", attempt);
+                    throw e;
+                }
+                retries.increment();
+                sleep(backoff(attempt));
+            }
+        }
+    }
+    
+    public void run(Runnable action) {
+        execute(() -> {
+            action.run();
+            return null;
+        });
+    }
+    
+    public Stats stats() {
+        return new Stats(calls.sum(), conflicts.sum(), retries.sum(), exhausted.sum(), maxAttempts);
+    }
+    
+    private long backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt - 1, 20));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+    
+    private void sleep(long millis) {
+        if (millis == 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("주문 재시도 대기 중 인터럽트되었습니다.", e);
+        }
+    }
+    
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+        private long calls;         //실행 요청 수
+        private long conflicts;     //낙관적 락 충돌 수
+        private long retries;       //다시 실행한 수
+        private long exhausted;     //max-attempts 까지 실패해서 포기한 수
+        private int maxAttempts;
+    }
+}
@@ -1,23 +1,51 @@
 package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.*;
+import jpabook.jpashop.event.OrderChangedEvent;
+import jpabook.jpashop.exception.BulkCancelLimitExceededException;
+import jpabook.jpashop.repository.ItemRepository;
 import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.repository.OrderCancelTarget;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.OrderSummaryRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.summingInt;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 
 @Service
 @Transactional(readOnly = true)
 @RequiredArgsConstructor
 public class OrderService {
 
+    public static final int MAX_BULK_CANCEL = 10000;
+    private static final int BULK_CANCEL_CHUNK_SIZE = 1000;
+
     private final OrderRepository orderRepository;
+    private final OrderSummaryRepository orderSummaryRepository;
     private final MemberRepository memberRepository;
     private final ItemService itemService;
+    private final ItemRepository itemRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectProvider<StockLedger> stockLedger;    //jpashop.stock-ledger.enabled=true 일 때만 존재
+    private final EntityManager em;
 
     /**
      * 주문
@@ -34,7 +62,7 @@ public class OrderService {
         delivery.setAddress(member.getAddress());
 
         //주문상품 생성
-        OrderItem orderItem = OrderItem.createOrderItem(item, item.getPrice(), count);
+        OrderItem orderItem = createOrderItem(item, count);
 
         //주문 생성
         Order order = Order.createOrder(member, delivery, orderItem);
@@ -58,10 +86,114 @@ public class OrderService {
          * └─> 어디서 전파되어 수정 되었는지 역추적이 어려움.
          */
         orderRepository.save(order);
+        orderSummaryRepository.save(OrderSummary.createOrderSummary(order));
+        eventPublisher.publishEvent(new OrderChangedEvent(order.getId(), order.getStatus(), order.getOrderDate(), order.getTotalPrice()));
 
         return order.getId();
     }
 
+    /**
+     * 여러 상품 주문
+     * └─> 주문상품 수와 상관없이 정해진 횟수의 쿼리로 주문 한 건을 만든다.
+     *     1. 회원은 getReference 로 가져와서 배송지 주소가 필요할 때 한번만 조회하고
+     *     2. 상품은 in 쿼리 한번으로 조회하고
+     *     3. 재고는 상품별 수량을 합쳐서 item_id 오름차순으로 차감한다. (row lock 을 항상 같은 순서로 잡으므로 deadlock 이 나지 않는다.)
+     */
+    @Transactional
+    public Long order(Long memberId, List<OrderLine> lines) {
+        if (lines.isEmpty()) {
+            throw new IllegalArgumentException("주문상품이 없습니다.");
+        }
+        
+        Member member = memberRepository.getOne(memberId);
+        Map<Long, Item> items = itemService.findItems(
+                lines.stream().map(OrderLine::getItemId).collect(toSet())).stream()
+                .collect(toMap(Item::getId, i -> i));
+        for (OrderLine line : lines) {
+            if (!items.containsKey(line.getItemId())) {
+                throw new IllegalArgumentException("존재하지 않는 상품입니다. itemId=" + line.getItemId());
+            }
+        }
+        
+        StockLedger ledger = stockLedger.getIfAvailable();
+        Map<Long, Integer> counts = lines.stream()
+                .collect(groupingBy(OrderLine::getItemId, TreeMap::new, summingInt(OrderLine::getCount)));
+        if (ledger == null) {
+            itemRepository.decreaseStocks(counts);
+        } else {
+            counts.forEach((itemId, count) -> ledger.reserve(items.get(itemId), count));
+        }
+        
+        OrderItem[] orderItems = lines.stream()
+                .map(line -> {
+                    Item item = items.get(line.getItemId());
+                    return OrderItem.createReservedOrderItem(item, item.getPrice(), line.getCount());
+                })
+                .toArray(OrderItem[]::new);
+        
+        Delivery delivery = new Delivery();
+        delivery.setAddress(member.getAddress());
+        Order order = Order.createOrder(member, delivery, orderItems);
+        
+        orderRepository.save(order);
+        orderSummaryRepository.save(OrderSummary.createOrderSummary(order));
+        eventPublisher.publishEvent(new OrderChangedEvent(order.getId(), order.getStatus(), order.getOrderDate(), order.getTotalPrice()));
+        
+        return order.getId();
+    }
+    
+    /**
+     * 일괄 주문
+     * └─> 여러 건의 주문을 한 트랜잭션에서 처리한다.
+     *     1. 주문에 필요한 회원과 상품을 in 쿼리로 한번에 조회하고
+     *     2. 재고는 상품별 수량을 합쳐서 item_id 순서대로 한번의 JDBC batch 로 차감하고
+     *     3. insert 는 'hibernate.jdbc.batch_size' 만큼 모아서 JDBC batch 로 실행한다. (order_inserts 로 테이블별 정렬)
+     */
+    @Transactional
+    public List<Long> orders(List<OrderCommand> commands) {
+        Map<Long, Member> members = memberRepository.findAllById(
+                commands.stream().map(OrderCommand::getMemberId).collect(toSet())).stream()
+                .collect(toMap(Member::getId, m -> m));
+        Map<Long, Item> items = itemService.findItems(
+                commands.stream().map(OrderCommand::getItemId).collect(toSet())).stream()
+                .collect(toMap(Item::getId, i -> i));
+        
+        for (OrderCommand command : commands) {
+            if (!members.containsKey(command.getMemberId())) {
+                throw new IllegalArgumentException("존재하지 않는 회원입니다. memberId=" + command.getMemberId());
+            }
+            if (!items.containsKey(command.getItemId())) {
+                throw new IllegalArgumentException("존재하지 않는 상품입니다. itemId=" + command.getItemId());
+            }
+        }
+        
+        StockLedger ledger = stockLedger.getIfAvailable();
+        if (ledger == null) {
+            itemRepository.decreaseStocks(commands.stream()
+                    .collect(groupingBy(OrderCommand::getItemId, TreeMap::new, summingInt(OrderCommand::getCount))));
+        }
+        
+        List<Long> orderIds = new ArrayList<>(commands.size());
+        for (OrderCommand command : commands) {
+            Member member = members.get(command.getMemberId());
+            Item item = items.get(command.getItemId());
+            if (ledger != null) {
+                ledger.reserve(item, command.getCount());
+            }
+            
+            Delivery delivery = new Delivery();
+            delivery.setAddress(member.getAddress());
+            OrderItem orderItem = OrderItem.createReservedOrderItem(item, item.getPrice(), command.getCount());
+            Order order = Order.createOrder(member, delivery, orderItem);
+            
+            orderRepository.save(order);
+            orderSummaryRepository.save(OrderSummary.createOrderSummary(order));
+            eventPublisher.publishEvent(new OrderChangedEvent(order.getId(), order.getStatus(), order.getOrderDate(), order.getTotalPrice()));
+            orderIds.add(order.getId());
+        }
+        return orderIds;
+    }
+    
     /**
      * 주문 취소
      */
@@ -71,7 +203,134 @@ public class OrderService {
         Order order = orderRepository.findOne(orderId);
 
         //주문 취소
-        order.cancel();
+        /*
+         * 재고는 주문할 때와 마찬가지로 엔티티를 고치지 않고 상품별 update 로 되돌린다.
+         * └─> 주문할 때 bulk update 로 차감했으므로 영속성 컨텍스트의 Item 은 재고와 version 이 오래된 값이다.
+         */
+        order.cancelWithoutRestock();
+        Map<Long, Integer> restock = order.getOrderItems().stream()
+                .collect(groupingBy(oi -> oi.getItem().getId(), TreeMap::new, summingInt(OrderItem::getCount)));
+        StockLedger ledger = stockLedger.getIfAvailable();
+        if (ledger == null) {
+            itemRepository.increaseStocks(restock);
+        } else {
+            restock.forEach(ledger::release);
+        }
+        cancelOrderSummary(order);
+        eventPublisher.publishEvent(new OrderChangedEvent(orderId, order.getStatus(), order.getOrderDate(), order.getTotalPrice()));
+    }
+    
+    /*
+     * 주문상품 생성
+     * └─> 재고는 'stock_quantity >= ?' 조건을 건 update 로 차감한다. (ItemRepository.decreaseStock)
+     *     StockLedger 를 사용하면 재고는 장부에서 CAS 로 차감하고, item 테이블에는 나중에 모아서 반영한다.
+     */
+    private OrderItem createOrderItem(Item item, int count) {
+        StockLedger ledger = stockLedger.getIfAvailable();
+        if (ledger == null) {
+            itemRepository.decreaseStock(item.getId(), count);
+        } else {
+            ledger.reserve(item, count);
+        }
+        return OrderItem.createReservedOrderItem(item, item.getPrice(), count);
+    }
+    
+    /**
+     * 일괄 주문 취소
+     * └─> 주문을 하나씩 읽어서 엔티티로 취소하지 않고 chunk 단위 set 기반 쿼리로 처리한다.
+     *     1. 대상 주문을 id 순서로 잠그고 (for update) 배송완료(COMP) 주문은 거절, 없거나 이미 취소된 주문은 건너뛴다.
+     *     2. 주문 상태를 update 한번으로 CANCEL 로 바꾸고
+     *     3. 재고는 상품별 수량을 합쳐서 상품마다 update 한번으로 되돌리고
+     *     4. 주문 요약도 update 한번으로 바꾼다.
+     * bulk update 는 영속성 컨텍스트를 거치지 않으므로 끝나면 영속성 컨텍스트를 비운다. (이미 읽어둔 주문은 예전 상태)
+     */
+    @Transactional
+    public BulkCancelResult cancelOrders(List<Long> orderIds) {
+        validateBulkCancelSize(orderIds);
+        List<Long> ids = orderIds.stream().distinct().sorted().collect(toList());
+        
+        BulkCancelResult result = new BulkCancelResult();
+        for (int from = 0; from < ids.size(); from += BULK_CANCEL_CHUNK_SIZE) {
+            cancelChunk(ids.subList(from, Math.min(from + BULK_CANCEL_CHUNK_SIZE, ids.size())), result);
+        }
+        em.flush();
+        em.clear();
+        return result;
+    }
+    
+    /**
+     * 검색 조건에 맞는 주문 일괄 취소
+     * └─> 일부만 취소하고 끝내지 않도록 MAX_BULK_CANCEL 건이 넘게 조회되면 하나도 취소하지 않고 거절한다.
+     */
+    @Transactional
+    public BulkCancelResult cancelOrders(OrderSearch orderSearch) {
+        return cancelOrders(orderRepository.findIds(orderSearch, MAX_BULK_CANCEL + 1));
+    }
+    
+    private void validateBulkCancelSize(List<Long> orderIds) {
+        if (orderIds.size() > MAX_BULK_CANCEL) {
+            throw new BulkCancelLimitExceededException("한번에 취소할 수 있는 주문은 " + MAX_BULK_CANCEL + "건 입니다.");
+        }
+    }
+    
+    private void cancelChunk(List<Long> chunk, BulkCancelResult result) {
+        List<OrderCancelTarget> targets = orderRepository.findCancelTargetsForUpdate(chunk);
+        
+        Map<Long, OrderCancelTarget> cancelTargets = new HashMap<>();
+        Set<Long> rejected = new HashSet<>();
+        for (OrderCancelTarget target : targets) {
+            if (target.getStatus() == OrderStatus.CANCEL) {
+                continue;
+            }
+            if (target.getDeliveryStatus() == DeliveryStatus.COMP) {
+                rejected.add(target.getOrderId());
+                continue;
+            }
+            cancelTargets.put(target.getOrderId(), target);
+        }
+        for (Long orderId : chunk) {
+            if (rejected.contains(orderId)) {
+                result.getRejected().add(orderId);
+            } else if (!cancelTargets.containsKey(orderId)) {
+                result.getSkipped().add(orderId);
+            }
+        }
+        if (cancelTargets.isEmpty()) {
+            return;
+        }
+        
+        List<Long> cancelIds = cancelTargets.keySet().stream().sorted().collect(toList());
+        orderRepository.cancelAll(cancelIds);
+        orderSummaryRepository.cancelAll(cancelIds);
+        
+        Map<Long, Integer> restock = new TreeMap<>();
+        Map<Long, Long> totalPrices = new HashMap<>();
+        for (Object[] row : orderRepository.sumOrderItems(cancelIds)) {
+            restock.merge((Long) row[1], ((Number) row[2]).intValue(), Integer::sum);
+            totalPrices.merge((Long) row[0], ((Number) row[3]).longValue(), Long::sum);
+        }
+        StockLedger ledger = stockLedger.getIfAvailable();
+        if (ledger == null) {
+            itemRepository.increaseStocks(restock);
+        } else {
+            restock.forEach(ledger::release);
+        }
+        
+        for (Long orderId : cancelIds) {
+            int totalPrice = totalPrices.getOrDefault(orderId, 0L).intValue();
+            eventPublisher.publishEvent(new OrderChangedEvent(orderId, OrderStatus.CANCEL, cancelTargets.get(orderId).getOrderDate(), totalPrice));
+        }
+        result.getCancelled().addAll(cancelIds);
+    }
+    
+    private void cancelOrderSummary(Order order) {
+        OrderSummary summary = orderSummaryRepository.findOne(order.getId());
+        if (summary == null) {
+            //요약이 만들어지기 전에 들어간 주문이면 지금 만든다.
+            orderSummaryRepository.save(OrderSummary.createOrderSummary(order));
+            return;
+        }
+        summary.cancel();
     }
     
     /**
@@ -80,4 +339,18 @@ public class OrderService {
     public List<Order> findOrders(OrderSearch orderSearch) {
         return orderRepository.findAllByString(orderSearch);
     }
+    
+    /**
+     * 주문 검색 (페이징)
+     */
+    public List<Order> findOrders(OrderSearch orderSearch, int offset, int limit) {
+        return orderRepository.findAll(orderSearch, offset, limit);
+    }
+    
+    /**
+     * 주문 검색 건수
+     */
+    public long countOrders(OrderSearch orderSearch) {
+        return orderRepository.count(orderSearch);
+    }
 }
@@ -0,0 +1,141 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.event.OrderChangedEvent;
+import jpabook.jpashop.repository.order.query.OrderDailyStatDto;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 일별, 주문 상태별 주문 건수와 매출을 메모리에 들고 있는 통계
+ * <p>
+ * 주문 목록을 전부 읽어서 합산하지 않고
+ * 주문 / 취소가 커밋될 때마다 해당 칸의 카운터만 더하고 빼기 때문에 조회는 칸 하나를 읽는 비용이다.
+ * 애플리케이션이 뜰 때는 DB 집계 쿼리 한 번으로 카운터를 다시 채운다.
+ * <p>
+ * 다시 채울 때는 새 grid 를 따로 만든 뒤 한번에 바꿔 끼운다.
+ * └─> 그 사이에 커밋된 주문 이벤트는 모아두었다가 새 grid 에 반영한 뒤 바꿔 끼운다.
+ *     (기존 grid 를 비우고 채우면 그 사이 이벤트가 사라지거나 두 번 더해진다)
+ *     이벤트를 모으기 시작한 뒤 집계 쿼리가 실행되기 전에 커밋된 주문은 두 번 더해질 수 있지만
+ *     그 간격은 쿼리 하나를 보내는 시간뿐이다.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderStatisticsService {
+    
+    private final OrderQueryRepository orderQueryRepository;
+    
+    private final Object lock = new Object();
+    private volatile ConcurrentMap<LocalDate, Counter[]> grid = new ConcurrentHashMap<>();
+    private List<OrderChangedEvent> pendingEvents;     //다시 채우는 동안에만 존재 (lock 으로 보호)
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (lock) {
+            pendingEvents = new ArrayList<>();
+        }
+        
+        ConcurrentMap<LocalDate, Counter[]> newGrid = new ConcurrentHashMap<>();
+        try {
+            for (OrderDailyStatDto stat : orderQueryRepository.findDailyStats()) {
+                add(newGrid, stat.getOrderDate(), stat.getOrderStatus(), stat.getOrderCount(), stat.getRevenue());
+            }
+        } catch (RuntimeException e) {
+            //다시 채우지 못하면 모아둔 이벤트를 기존 grid 에 반영하고 그대로 사용한다.
+            swap(grid);
+            throw e;
+        }
+        swap(newGrid);
+    }
+    
+    @TransactionalEventListener
+    public void onOrderChanged(OrderChangedEvent event) {
+        ConcurrentMap<LocalDate, Counter[]> target;
+        synchronized (lock) {
+            if (pendingEvents != null) {
+                pendingEvents.add(event);
+                return;
+            }
+            target = grid;
+        }
+        apply(target, event);
+    }
+    
+    /**
+     * from ~ to (포함) 기간의 일별 통계
+     */
+    public List<DailyStat> findDailyStats(LocalDate from, LocalDate to) {
+        List<DailyStat> result = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            Counter[] counters = grid.get(day);
+            if (counters == null) {
+                continue;
+            }
+            for (OrderStatus status : OrderStatus.values()) {
+                Counter counter = counters[status.ordinal()];
+                result.add(new DailyStat(day, status, counter.orderCount.sum(), counter.revenue.sum()));
+            }
+        }
+        return result;
+    }
+    
+    private void swap(ConcurrentMap<LocalDate, Counter[]> newGrid) {
+        synchronized (lock) {
+            for (OrderChangedEvent event : pendingEvents) {
+                apply(newGrid, event);
+            }
+            grid = newGrid;
+            pendingEvents = null;
+        }
+    }
+    
+    private static void apply(ConcurrentMap<LocalDate, Counter[]> grid, OrderChangedEvent event) {
+        LocalDate day = event.getOrderDate().toLocalDate();
+        int totalPrice = event.getTotalPrice();
+        
+        if (event.getStatus() == OrderStatus.CANCEL) {
+            //주문 상태에서 취소 상태로 옮긴다.
+            add(grid, day, OrderStatus.ORDER, -1, -totalPrice);
+        }
+        add(grid, day, event.getStatus(), 1, totalPrice);
+    }
+    
+    private static void add(ConcurrentMap<LocalDate, Counter[]> grid, LocalDate day, OrderStatus status, long orderCount, long revenue) {
+        Counter counter = grid.computeIfAbsent(day, d -> {
+            Counter[] counters = new Counter[OrderStatus.values().length];
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = new Counter();
+            }
+            return counters;
+        })[status.ordinal()];
+        counter.orderCount.add(orderCount);
+        counter.revenue.add(revenue);
+    }
+    
+    private static class Counter {
+        private final LongAdder orderCount = new LongAdder();
+        private final LongAdder revenue = new LongAdder();
+    }
+    
+    @Getter
+    @AllArgsConstructor
+    public static class DailyStat {
+        private LocalDate orderDate;
+        private OrderStatus orderStatus;
+        private long orderCount;
+        private long revenue;
+    }
+}
@@ -0,0 +1,265 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Item;
+import jpabook.jpashop.event.ItemChangedEvent;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 상품 재고를 메모리의 atomic 카운터로 관리하는 재고 장부 (jpashop.stock-ledger.enabled=true 일 때만 사용)
+ * <p>
+ * Item.removeStock 은 엔티티를 읽고 고친 뒤 flush 하는 방식이라 같은 상품에 주문이 몰리면
+ * 같은 row 의 lock 을 기다리거나 변경 내용이 덮어써진다.
+ * 장부를 켜면
+ *    1. 주문할 때 상품별 카운터를 CAS 로 줄여서 재고를 확보하고 (확보 못하면 NotEnoughStockException)
+ *    2. 트랜잭션이 커밋되면 변경량을 쌓아두었다가, 롤백되면 확보한 재고를 돌려놓는다.
+ *    3. 쌓인 변경량은 주기적으로 'stock_quantity = stock_quantity + ?' JDBC batch 로 DB 에 반영한다.
+ * 애플리케이션이 뜰 때는 DB 의 재고로 카운터를 다시 맞춘다.
+ * <p>
+ * 카운터를 DB 재고로 다시 맞출 때 (reload) 는 '주문 가능 = DB 재고 + 반영 안 한 변경량 - 확보했지만 아직 커밋 안 된 수량' 이다.
+ * └─> DB 재고와 반영 안 한 변경량이 어긋나지 않도록 reload 와 flush 는 서로 겹치지 않게 실행하고 (synchronized)
+ *     reload 하는 동안에는 그 상품의 재고 확보 / 반영을 잠시 막는다. (상품별 read / write lock)
+ * <p>
+ * 관리자가 재고를 절대값으로 수정할 때는 ItemService 가 먼저 flush 를 호출해서 그 전에 커밋된 변경량을 반영해둔다.
+ * └─> 남겨두면 다음 flush 때 수정 전의 변경량이 관리자가 입력한 재고 위에 한 번 더 더해진다.
+ * <p>
+ * 반영 안 한 변경량은 메모리에만 있다. 종료할 때 (close) 마지막으로 반영하지만
+ * 프로세스가 죽으면 커밋된 주문 / 취소의 재고 변경이 최대 flush-interval-ms 만큼 사라진다.
+ * 인스턴스마다 장부를 따로 들고 있으므로 여러 인스턴스로 띄울 때도 사용할 수 없다. 그래서 기본값은 꺼져 있다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "jpashop.stock-ledger.enabled", havingValue = "true")
+public class StockLedger {
+    
+    private final EntityManager em;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int flushBatchSize;
+    
+    //ConcurrentHashMap 이 상품 id 별로 bin 을 나눠서 잠그므로 서로 다른 상품끼리는 경합하지 않는다.
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    
+    public StockLedger(EntityManager em,
+                       JdbcTemplate jdbcTemplate,
+                       TransactionTemplate transactionTemplate,
+                       @Value("${jpashop.stock-ledger.flush-batch-size:500}") int flushBatchSize) {
+        this.em = em;
+        this.jdbcTemplate = jdbcTemplate;
+        //관리자 재고 수정 트랜잭션 안에서 호출해도 그 트랜잭션과 상관없이 먼저 커밋한다.
+        this.transactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.flushBatchSize = flushBatchSize;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reconcile() {
+        List<Object[]> rows = em.createQuery("select i.id, i.stockQuantity from Item i", Object[].class)
+                .getResultList();
+        for (Object[] row : rows) {
+            reload((Long) row[0], (Integer) row[1]);
+        }
+        log.info("stock ledger reconciled. items={}", rows.size());
+    }
+    
+    /**
+     * 재고 확보
+     * └─> 주문 트랜잭션 안에서 호출한다. 롤백되면 확보한 재고를 돌려놓는다.
+     */
+    public void reserve(Item item, int count) {
+        Entry entry = entry(item.getId());
+        
+        entry.update(() -> {
+            while (true) {
+                int current = entry.available.get();
+                int rest = current - count;
+                if (rest < 0) {
+                    throw new NotEnoughStockException("need more stock");
+                }
+                if (entry.available.compareAndSet(current, rest)) {
+                    break;
+                }
+            }
+            entry.reserved.addAndGet(count);
+        });
+        
+        afterCompletion(committed -> entry.update(() -> {
+            entry.reserved.addAndGet(-count);
+            if (committed) {
+                entry.pendingDelta.addAndGet(-count);
+            } else {
+                entry.available.addAndGet(count);
+            }
+        }));
+    }
+    
+    /**
+     * 재고 반환 (주문 취소)
+     * └─> 커밋된 뒤에만 반영한다.
+     */
+    public void release(Long itemId, int count) {
+        afterCompletion(committed -> {
+            if (committed) {
+                Entry entry = entry(itemId);
+                entry.update(() -> {
+                    entry.available.addAndGet(count);
+                    entry.pendingDelta.addAndGet(count);
+                });
+            }
+        });
+    }
+    
+    public int available(Long itemId) {
+        Entry entry = entries.get(itemId);
+        return entry == null ? -1 : entry.available.get();
+    }
+    
+    /*
+     * 관리자가 재고를 직접 수정하면 DB 값으로 카운터를 다시 맞춘다.
+     * └─> 수정 전의 변경량은 ItemService 가 먼저 반영했으므로 남은 변경량은 수정 뒤에 커밋된 주문 / 취소의 것이다.
+     */
+    @TransactionalEventListener
+    public synchronized void onItemChanged(ItemChangedEvent event) {
+        reload(event.getItemId(), selectStockQuantity(event.getItemId()));
+    }
+    
+    /**
+     * 쌓인 변경량을 DB 에 반영
+     * └─> 호출한 쪽에 트랜잭션이 있어도 별도 트랜잭션으로 커밋한다.
+     */
+    @Scheduled(fixedDelayString = "${jpashop.stock-ledger.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        List<Object[]> deltas = new ArrayList<>();
+        entries.forEach((itemId, entry) -> {
+            int delta = entry.pendingDelta.getAndSet(0);
+            if (delta != 0) {
+                deltas.add(new Object[]{delta, itemId});
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+        
+        try {
+            transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(
+                    "update item set stock_quantity = stock_quantity + ?, version = version + 1 where item_id = ?",
+                    deltas,
+                    flushBatchSize,
+                    (ps, delta) -> {
+                        ps.setInt(1, (Integer) delta[0]);
+                        ps.setLong(2, (Long) delta[1]);
+                    }));
+            //SQL 로 바꾼 상품은 2차 캐시에서 지운다.
+            Cache cache = em.getEntityManagerFactory().getCache();
+            for (Object[] delta : deltas) {
+                cache.evict(Item.class, delta[1]);
+            }
+        } catch (RuntimeException e) {
+            //반영하지 못한 변경량은 다음 flush 때 다시 시도한다.
+            for (Object[] delta : deltas) {
+                entries.get((Long) delta[1]).pendingDelta.addAndGet((Integer) delta[0]);
+            }
+            log.warn("stock ledger flush failed. items={}", deltas.size(), e);
+        }
+    }
+    
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+    
+    /*
+     * 장부에 없는 상품은 DB 에서 재고를 직접 읽어서 추가한다.
+     * └─> 엔티티의 stockQuantity 는 2차 캐시에서 읽은 오래된 값일 수 있다.
+     *     flush 와 겹치면 DB 재고와 변경량이 어긋나므로 synchronized 로 막는다.
+     */
+    private Entry entry(Long itemId) {
+        Entry entry = entries.get(itemId);
+        if (entry != null) {
+            return entry;
+        }
+        synchronized (this) {
+            return entries.computeIfAbsent(itemId, id -> new Entry(selectStockQuantity(id)));
+        }
+    }
+    
+    private int selectStockQuantity(Long itemId) {
+        return jdbcTemplate.queryForObject(
+                "select stock_quantity from item where item_id = ?", Integer.class, itemId);
+    }
+    
+    //flush 와 겹치지 않도록 synchronized 메소드 안에서만 호출한다.
+    private void reload(Long itemId, int stockQuantity) {
+        Entry entry = entries.computeIfAbsent(itemId, id -> new Entry(stockQuantity));
+        Lock lock = entry.lock.writeLock();
+        lock.lock();
+        try {
+            entry.available.set(stockQuantity + entry.pendingDelta.get() - entry.reserved.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void afterCompletion(CompletionCallback callback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            callback.completed(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                callback.completed(status == TransactionSynchronization.STATUS_COMMITTED);
+            }
+        });
+    }
+    
+    private interface CompletionCallback {
+        void completed(boolean committed);
+    }
+    
+    private static class Entry {
+        private final AtomicInteger available;                          //주문 가능한 재고
+        private final AtomicInteger pendingDelta = new AtomicInteger(); //DB 에 아직 반영하지 않은 변경량
+        private final AtomicInteger reserved = new AtomicInteger();     //확보했지만 트랜잭션이 아직 끝나지 않은 수량
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();   //재고 확보 / 반영은 read, reload 는 write
+        
+        Entry(int available) {
+            this.available = new AtomicInteger(available);
+        }
+        
+        void update(Runnable change) {
+            Lock readLock = lock.readLock();
+            readLock.lock();
+            try {
+                change.run();
+            } finally {
+                readLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package jpabook.jpashop.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.order.query.OrderFlatDto;
+import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OrderBinaryModuleTest {
+    
+    //스프링 부트 기본 설정과 같은 reflection 기반 JSON
+    private final ObjectMapper reflectionMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    
+    private final ObjectMapper handWrittenMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .registerModule(new OrderBinaryModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    
+    private final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory())
+            .registerModule(new JavaTimeModule())
+            .registerModule(new OrderBinaryModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    
+    private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory())
+            .registerModule(new JavaTimeModule())
+            .registerModule(new OrderBinaryModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    
+    @Test
+    public void 직접_쓴_serializer_는_기존_JSON_과_같은_구조로_쓴다() throws Exception {
+        //given
+        LocalDateTime orderDate = LocalDateTime.of(2020, 1, 1, 10, 0);
+        List<Object> dtos = Arrays.asList(
+                new OrderQueryDto(1L, "userA", orderDate, OrderStatus.ORDER, new Address("서울", "1", "1111"),
+                        Arrays.asList(new OrderItemQueryDto(1L, "JPA1 BOOK", 10000, 1),
+                                new OrderItemQueryDto(1L, "JPA2 BOOK", 20000, 2))),
+                new OrderQueryDto(2L, "userB", orderDate, OrderStatus.CANCEL, null, Collections.emptyList()),
+                new OrderFlatDto(3L, "userC", orderDate, OrderStatus.ORDER, new Address("부산", "2", "2222"),
+                        "SPRING1 BOOK", 20000, 3)
+        );
+        
+        //when
+        String expected = reflectionMapper.writeValueAsString(dtos);
+        String actual = handWrittenMapper.writeValueAsString(dtos);
+        byte[] cbor = cborMapper.writeValueAsBytes(dtos);
+        
+        //then
+        assertEquals("필드 이름과 값이 기존 JSON 응답과 같아야 한다.",
+                reflectionMapper.readTree(expected), reflectionMapper.readTree(actual));
+        assertEquals("CBOR 로 읽어도 같은 구조여야 한다.",
+                reflectionMapper.readTree(expected), cborMapper.readTree(cbor));
+    }
+    
+    @Test
+    public void 주문_엔티티로_만든_OrderDto_도_같은_구조로_쓴다() throws Exception {
+        //given
+        Member member = new Member();
+        member.setName("userA");
+        
+        Delivery delivery = new Delivery();
+        delivery.setAddress(new Address("서울", "1", "1111"));
+        
+        Book book1 = new Book();
+        book1.setName("JPA1 BOOK");
+        book1.setStockQuantity(10);
+        Book book2 = new Book();
+        book2.setName("JPA2 BOOK");
+        book2.setStockQuantity(10);
+        
+        Order order = Order.createOrder(member, delivery,
+                OrderItem.createOrderItem(book1, 10000, 1),
+                OrderItem.createOrderItem(book2, 20000, 2));
+        List<OrderApiController.OrderDto> dtos = Collections.singletonList(new OrderApiController.OrderDto(order));
+        
+        //when
+        String expected = reflectionMapper.writeValueAsString(dtos);
+        String actual = handWrittenMapper.writeValueAsString(dtos);
+        byte[] cbor = cborMapper.writeValueAsBytes(dtos);
+        
+        //then
+        assertEquals("필드 이름과 값이 기존 JSON 응답과 같아야 한다. (v3)",
+                reflectionMapper.readTree(expected), reflectionMapper.readTree(actual));
+        assertEquals(reflectionMapper.readTree(expected), cborMapper.readTree(cbor));
+    }
+    
+    /*
+     * v5 (OrderQueryDto), v6 (OrderFlatDto) 응답을 CBOR / Smile 로 쓰면 지금의 JSON 응답보다 작아야 한다.
+     * └─> Smile 은 반복되는 필드 이름을 참조로 쓰므로 목록이 길수록 차이가 커진다.
+     */
+    @Test
+    public void 바이너리_형식은_JSON_보다_작다() throws Exception {
+        //given
+        LocalDateTime orderDate = LocalDateTime.of(2020, 1, 1, 10, 0);
+        List<OrderQueryDto> orders = new ArrayList<>();
+        List<OrderFlatDto> flats = new ArrayList<>();
+        for (long i = 1; i <= 100; i++) {
+            Address address = new Address("서울", "강가 " + i, "123-123");
+            orders.add(new OrderQueryDto(i, "user" + i, orderDate, OrderStatus.ORDER, address, Arrays.asList(
+                    new OrderItemQueryDto(i, "JPA1 BOOK", 10000, 1),
+                    new OrderItemQueryDto(i, "JPA2 BOOK", 20000, 2))));
+            flats.add(new OrderFlatDto(i, "user" + i, orderDate, OrderStatus.ORDER, address, "JPA1 BOOK", 10000, 1));
+            flats.add(new OrderFlatDto(i, "user" + i, orderDate, OrderStatus.ORDER, address, "JPA2 BOOK", 20000, 2));
+        }
+        
+        for (List<?> dtos : Arrays.asList(orders, flats)) {
+            //when
+            int json = reflectionMapper.writeValueAsBytes(dtos).length;
+            int cbor = cborMapper.writeValueAsBytes(dtos).length;
+            int smile = smileMapper.writeValueAsBytes(dtos).length;
+            
+            //then
+            assertTrue("CBOR 가 JSON 보다 작아야 한다. json=" + json + ", cbor=" + cbor, cbor < json);
+            assertTrue("Smile 이 JSON 보다 작아야 한다. json=" + json + ", smile=" + smile, smile < json);
+        }
+    }
+}
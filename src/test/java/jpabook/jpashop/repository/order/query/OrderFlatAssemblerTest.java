@@ -0,0 +1,50 @@
+package jpabook.jpashop.repository.order.query;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.OrderStatus;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class OrderFlatAssemblerTest {
+    
+    @Test
+    public void 정렬된_flat_결과를_주문별로_묶는다() throws Exception {
+        //given
+        List<OrderFlatDto> flats = Arrays.asList(
+                flat(1L, "JPA1 BOOK", 10000, 1),
+                flat(1L, "JPA2 BOOK", 20000, 2),
+                flat(2L, "SPRING1 BOOK", 20000, 3),
+                flat(3L, "SPRING2 BOOK", 40000, 4),
+                flat(3L, "SPRING3 BOOK", 30000, 5)
+        );
+        
+        //when
+        List<OrderQueryDto> result = OrderFlatAssembler.assemble(flats);
+        
+        //then
+        assertEquals("주문 수만큼 묶여야 한다.", 3, result.size());
+        assertEquals("DB 에서 읽은 순서가 유지되어야 한다.", Long.valueOf(1L), result.get(0).getOrderId());
+        assertEquals(Long.valueOf(2L), result.get(1).getOrderId());
+        assertEquals(Long.valueOf(3L), result.get(2).getOrderId());
+        assertEquals("주문상품 수가 정확해야 한다.", 2, result.get(0).getOrderItems().size());
+        assertEquals(1, result.get(1).getOrderItems().size());
+        assertEquals("마지막 주문도 빠짐없이 묶여야 한다.", 2, result.get(2).getOrderItems().size());
+        assertEquals("SPRING3 BOOK", result.get(2).getOrderItems().get(1).getItemName());
+    }
+    
+    @Test
+    public void 빈_결과는_빈_목록() throws Exception {
+        assertEquals(0, OrderFlatAssembler.assemble(Collections.emptyList()).size());
+    }
+    
+    private OrderFlatDto flat(Long orderId, String itemName, int orderPrice, int count) {
+        return new OrderFlatDto(orderId, "userA", LocalDateTime.now(), OrderStatus.ORDER,
+                new Address("서울", "1", "1111"), itemName, orderPrice, count);
+    }
+}
@@ -0,0 +1,73 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.item.Book;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class CategoryServiceTest {
+    
+    @Autowired CategoryService categoryService;
+    @Autowired EntityManager em;
+    
+    @Test
+    public void 하위_카테고리와_상품_조회() throws Exception {
+        //given
+        Long rootId = categoryService.saveCategory("도서", null);
+        Long itId = categoryService.saveCategory("IT", rootId);
+        Long javaId = categoryService.saveCategory("자바", itId);
+        Long novelId = categoryService.saveCategory("소설", rootId);
+        
+        Book book = new Book();
+        book.setName("시골 JPA");
+        em.persist(book);
+        categoryService.addItem(javaId, book.getId());
+        em.flush();
+        em.clear();
+        
+        //when
+        List<Category> descendants = categoryService.findDescendantsWithItems(itId);
+        
+        //then
+        assertEquals("/" + rootId + "/" + itId + "/" + javaId + "/", em.find(Category.class, javaId).getPath());
+        assertEquals("자신과 하위 카테고리만 조회한다.", 2, descendants.size());
+        assertEquals(1, descendants.stream().mapToInt(c -> c.getItems().size()).sum());
+        assertEquals(0, categoryService.findDescendantsWithItems(novelId).get(0).getItems().size());
+    }
+    
+    @Test
+    public void 카테고리_이동시_하위_경로도_바뀐다() throws Exception {
+        //given
+        Long rootId = categoryService.saveCategory("도서", null);
+        Long itId = categoryService.saveCategory("IT", rootId);
+        Long javaId = categoryService.saveCategory("자바", itId);
+        Long otherRootId = categoryService.saveCategory("전자책", null);
+        em.flush();
+        em.clear();
+        
+        //when
+        categoryService.moveCategory(itId, otherRootId);
+        em.flush();
+        em.clear();
+        
+        //then
+        Category java = em.find(Category.class, javaId);
+        assertEquals("/" + otherRootId + "/" + itId + "/" + javaId + "/", java.getPath());
+        assertEquals(2, java.getDepth());
+        assertEquals(3, categoryService.findDescendantsWithItems(otherRootId).stream()
+                .map(Category::getId).collect(toList()).size());
+    }
+}
@@ -0,0 +1,75 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.service.MemberImportService.Format;
+import jpabook.jpashop.service.MemberImportService.ImportProgress;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class MemberImportServiceTest {
+    
+    @Autowired MemberImportService memberImportService;
+    @Autowired MemberRepository memberRepository;
+    @Autowired EntityManager em;
+    
+    @Test
+    public void CSV_회원_일괄등록() throws Exception {
+        //given
+        Member member = new Member();
+        member.setName("import-기존회원");
+        em.persist(member);
+        
+        String csv = "name,city,street,zipcode\n" +
+                "import-회원1,서울,\"강가, 1\",11111\n" +
+                "import-회원2,부산,바다,22222\n" +
+                "import-회원1,서울,강가,11111\n" +
+                "import-기존회원,서울,강가,33333\n" +
+                ",서울,강가,44444\n";
+        List<ImportProgress> progresses = new ArrayList<>();
+        
+        //when
+        ImportProgress result = memberImportService.importMembers(
+                new BufferedReader(new StringReader(csv)), Format.CSV, progresses::add);
+        
+        //then
+        assertEquals("읽은 줄 수 (헤더 제외)", 5, result.getRows());
+        assertEquals("새 회원만 저장한다.", 2, result.getImported());
+        assertEquals("파일 안의 중복과 이미 가입된 회원은 건너뛴다.", 2, result.getDuplicated());
+        assertEquals("이름이 없는 줄은 건너뛴다.", 1, result.getInvalid());
+        assertTrue(result.isDone());
+        assertEquals("강가, 1", memberRepository.findByName("import-회원1").get(0).getAddress().getStreet());
+    }
+    
+    @Test
+    public void NDJSON_회원_일괄등록() throws Exception {
+        //given
+        String ndjson = "{\"name\":\"import-회원3\",\"city\":\"서울\",\"street\":\"강가\",\"zipcode\":\"11111\"}\n" +
+                "not json\n";
+        
+        //when
+        ImportProgress result = memberImportService.importMembers(
+                new BufferedReader(new StringReader(ndjson)), Format.NDJSON, p -> { });
+        
+        //then
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getInvalid());
+        assertEquals("11111", memberRepository.findByName("import-회원3").get(0).getAddress().getZipcode());
+    }
+}
@@ -0,0 +1,158 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.IdAllocationSize;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import org.hibernate.SessionFactory;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * 주문 등록에서 실행되는 SQL 수 확인
+ * └─> 실행 시간은 환경마다 달라서 비교하지 않고, 준비한 statement 수와 sequence 호출 수를 센다.
+ *     테스트용 설정에는 batch / optimizer 설정이 없으므로 운영 설정 (application.yml) 과 같은 값을 여기서 준다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=100",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.jpa.properties.hibernate.id.optimizer.pooled.preferred=pooled-lo",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=jpabook.jpashop.service.OrderInsertStatementTest$SequenceCallCounter"
+})
+@Transactional
+public class OrderInsertStatementTest {
+    
+    private static final int ORDER_COUNT = 300;
+    
+    @Autowired OrderService orderService;
+    @Autowired MemberService memberService;
+    @Autowired ItemService itemService;
+    @Autowired EntityManager em;
+    
+    private Statistics statistics;
+    private Long memberId;
+    private Long itemId;
+    
+    @Before
+    public void setUp() {
+        statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        
+        Member member = new Member();
+        member.setName("member-" + System.nanoTime());
+        member.setAddress(new Address("서울", "강가", "123-123"));
+        memberId = memberService.join(member);
+        
+        Book book = new Book();
+        book.setName("시골 JPA");
+        book.setPrice(10000);
+        book.setStockQuantity(ORDER_COUNT * 3);
+        itemService.saveItem(book);
+        itemId = book.getId();
+    }
+    
+    /*
+     * Order, Delivery, OrderItem 은 allocationSize 만큼 id 를 한번에 받아두므로
+     * sequence 마다 '주문 수 / allocationSize + 1' 번을 넘게 호출하지 않는다. (allocationSize=1 이면 주문마다 3번)
+     */
+    @Test
+    public void 주문당_sequence_호출은_할당_크기만큼_줄어든다() throws Exception {
+        //given
+        orderService.order(memberId, itemId, 1);     //sequence 블록을 미리 받아둔다.
+        SequenceCallCounter.reset();
+        
+        //when
+        for (int i = 0; i < ORDER_COUNT; i++) {
+            orderService.order(memberId, itemId, 1);
+        }
+        
+        //then
+        long maxCalls = maxCalls(IdAllocationSize.ORDER) + maxCalls(IdAllocationSize.DELIVERY) + maxCalls(IdAllocationSize.ORDER_ITEM);
+        long sequenceCalls = SequenceCallCounter.count();
+        assertTrue("sequence 호출 수는 " + maxCalls + " 이하여야 한다. calls=" + sequenceCalls, sequenceCalls <= maxCalls);
+        assertTrue("주문 한 건당 sequence 호출은 한 번보다 적어야 한다. calls=" + sequenceCalls, sequenceCalls < ORDER_COUNT);
+    }
+    
+    /*
+     * 단건 주문은 주문마다 커밋 (여기서는 flush) 하므로 insert statement 를 주문마다 따로 준비하고
+     * 일괄 주문은 같은 insert 를 JDBC batch 로 묶어서 준비한다.
+     */
+    @Test
+    public void 일괄주문은_단건주문_반복보다_statement_를_적게_준비한다() throws Exception {
+        //given
+        orderService.order(memberId, itemId, 1);
+        em.flush();
+        em.clear();
+        
+        //when
+        statistics.clear();
+        for (int i = 0; i < ORDER_COUNT; i++) {
+            orderService.order(memberId, itemId, 1);
+            em.flush();
+            em.clear();
+        }
+        long single = statistics.getPrepareStatementCount();
+        
+        statistics.clear();
+        orderService.orders(commands(ORDER_COUNT));
+        em.flush();
+        em.clear();
+        long batch = statistics.getPrepareStatementCount();
+        
+        //then
+        assertTrue("일괄 주문이 준비하는 statement 수가 더 적어야 한다. single=" + single + ", batch=" + batch, batch < single);
+    }
+    
+    private static long maxCalls(int allocationSize) {
+        return ORDER_COUNT / allocationSize + 1;
+    }
+    
+    private List<OrderCommand> commands(int count) {
+        List<OrderCommand> commands = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            commands.add(new OrderCommand(memberId, itemId, 1));
+        }
+        return commands;
+    }
+    
+    /**
+     * 실행되는 SQL 중 sequence 호출 (H2 : 'call next value for ...') 수를 센다.
+     * └─> Hibernate 가 설정의 클래스 이름으로 직접 생성하므로 카운터는 static 으로 둔다.
+     */
+    public static class SequenceCallCounter implements StatementInspector {
+        
+        private static final AtomicLong COUNT = new AtomicLong();
+        
+        static void reset() {
+            COUNT.set(0);
+        }
+        
+        static long count() {
+            return COUNT.get();
+        }
+        
+        @Override
+        public String inspect(String sql) {
+            String lower = sql.toLowerCase();
+            if (lower.contains("next value for") || lower.contains("nextval")) {
+                COUNT.incrementAndGet();
+            }
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package jpabook.jpashop.service;
+
+import org.junit.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class OrderRetryTemplateTest {
+    
+    @Test
+    public void 충돌이_나면_다시_실행한다() throws Exception {
+        //given
+        OrderRetryTemplate retryTemplate = new OrderRetryTemplate(3, 0, 0);
+        AtomicInteger attempts = new AtomicInteger();
+        
+        //when
+        Long result = retryTemplate.execute(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Item", 1L);
+            }
+            return 1L;
+        });
+        
+        //then
+        assertEquals(Long.valueOf(1L), result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, retryTemplate.stats().getConflicts());
+        assertEquals(2, retryTemplate.stats().getRetries());
+        assertEquals(0, retryTemplate.stats().getExhausted());
+    }
+    
+    @Test
+    public void 최대_횟수까지_실패하면_예외를_던진다() throws Exception {
+        //given
+        OrderRetryTemplate retryTemplate = new OrderRetryTemplate(2, 0, 0);
+        AtomicInteger attempts = new AtomicInteger();
+        
+        //when
+        try {
+            retryTemplate.run(() -> {
+                attempts.incrementAndGet();
+                throw new ObjectOptimisticLockingFailureException("Item", 1L);
+            });
+            fail("낙관적 락 예외가 발생해야 한다.");
+        } catch (ObjectOptimisticLockingFailureException e) {
+            //then
+            assertEquals(2, attempts.get());
+            assertEquals(1, retryTemplate.stats().getExhausted());
+        }
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void 충돌이_아닌_예외는_다시_실행하지_않는다() throws Exception {
+        new OrderRetryTemplate(3, 0, 0).run(() -> {
+            throw new IllegalStateException("이미 배송완료된 상품은 취소가 불가능합니다.");
+        });
+    }
+}
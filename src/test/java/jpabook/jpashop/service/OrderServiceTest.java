@@ -12,6 +12,8 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -42,6 +44,7 @@ public class OrderServiceTest {
 
         //then
         Order getOrder = orderRepository.findOne(orderId);
+        em.refresh(book);   //재고는 update 쿼리로 차감하므로 DB 에서 다시 읽는다.
 
         assertEquals("상품 주문시 상태는 ORDER", OrderStatus.ORDER, getOrder.getStatus());
         assertEquals("주문한 상품 종류 수가 정확해야 한다.", 1, getOrder.getOrderItems().size());
@@ -80,10 +83,102 @@ public class OrderServiceTest {
         
         //then
         Order getOrder = orderRepository.findOne(orderId);
+        em.refresh(item);
         assertEquals("주문 취소시 상태는 CANCEL 이다.", OrderStatus.CANCEL, getOrder.getStatus());
         assertEquals("주문이 취소된 상품은 그만큼 재고가 증가해야 한다.", 10, item.getStockQuantity());
     }
     
+    @Test
+    public void 여러상품주문() throws Exception {
+        //given
+        Member member = createMember();
+        Book book1 = createBook("시골 JPA", 10000, 10);
+        Book book2 = createBook("시골 SPRING", 20000, 10);
+        
+        //when
+        Long orderId = orderService.order(member.getId(), Arrays.asList(
+                new OrderLine(book2.getId(), 3),
+                new OrderLine(book1.getId(), 2)
+        ));
+        
+        //then
+        Order getOrder = orderRepository.findOne(orderId);
+        em.refresh(book1);
+        em.refresh(book2);
+        assertEquals("주문한 상품 종류 수가 정확해야 한다.", 2, getOrder.getOrderItems().size());
+        assertEquals("주문 가격은 주문상품 가격의 합이다.", 20000 * 3 + 10000 * 2, getOrder.getTotalPrice());
+        assertEquals(8, book1.getStockQuantity());
+        assertEquals(7, book2.getStockQuantity());
+    }
+    
+    @Test
+    public void 일괄주문() throws Exception {
+        //given
+        Member member = createMember();
+        Book book1 = createBook("시골 JPA", 10000, 10);
+        Book book2 = createBook("시골 SPRING", 20000, 10);
+        
+        //when
+        List<Long> orderIds = orderService.orders(Arrays.asList(
+                new OrderCommand(member.getId(), book1.getId(), 2),
+                new OrderCommand(member.getId(), book2.getId(), 3),
+                new OrderCommand(member.getId(), book1.getId(), 1)
+        ));
+        
+        //then
+        em.refresh(book1);
+        em.refresh(book2);
+        assertEquals("요청한 주문 수만큼 생성되어야 한다.", 3, orderIds.size());
+        assertEquals("주문 가격은 가격 * 수량이다.", 20000 * 3, orderRepository.findOne(orderIds.get(1)).getTotalPrice());
+        assertEquals("같은 상품의 주문 수량이 모두 재고에서 빠져야 한다.", 7, book1.getStockQuantity());
+        assertEquals(7, book2.getStockQuantity());
+    }
+    
+    @Test
+    public void 재고가_부족하면_일괄주문_전체가_실패한다() throws Exception {
+        //given
+        Member member = createMember();
+        Book book1 = createBook("시골 JPA", 10000, 10);
+        Book book2 = createBook("시골 SPRING", 20000, 2);
+        
+        //when
+        try {
+            orderService.orders(Arrays.asList(
+                    new OrderCommand(member.getId(), book1.getId(), 2),
+                    new OrderCommand(member.getId(), book2.getId(), 2),
+                    new OrderCommand(member.getId(), book2.getId(), 1)
+            ));
+            fail("재고 수량 부족 예외가 발생해야 한다.");
+        } catch (NotEnoughStockException e) {
+            //then
+            em.refresh(book2);
+            assertEquals("재고가 모자라면 차감하지 않는다.", 2, book2.getStockQuantity());
+        }
+    }
+    
+    @Test
+    public void 일괄취소() throws Exception {
+        //given
+        Member member = createMember();
+        Book book = createBook("시골 JPA", 10000, 10);
+        Long orderId1 = orderService.order(member.getId(), book.getId(), 2);
+        Long orderId2 = orderService.order(member.getId(), book.getId(), 3);
+        Long completedOrderId = orderService.order(member.getId(), book.getId(), 1);
+        orderRepository.findOne(completedOrderId).getDelivery().setStatus(DeliveryStatus.COMP);
+        em.flush();
+        
+        //when
+        BulkCancelResult result = orderService.cancelOrders(Arrays.asList(orderId1, orderId2, completedOrderId, -1L));
+        
+        //then
+        assertEquals(Arrays.asList(orderId1, orderId2), result.getCancelled());
+        assertEquals("배송완료된 주문은 취소할 수 없다.", Arrays.asList(completedOrderId), result.getRejected());
+        assertEquals(Arrays.asList(-1L), result.getSkipped());
+        assertEquals(OrderStatus.CANCEL, orderRepository.findOne(orderId1).getStatus());
+        assertEquals(OrderStatus.ORDER, orderRepository.findOne(completedOrderId).getStatus());
+        assertEquals("취소한 주문 수량만큼 재고가 돌아와야 한다.", 9, em.find(Book.class, book.getId()).getStockQuantity());
+    }
+    
     private Book createBook(String name, int price, int stockQuantity) {
         Book book = new Book();
         book.setName(name);